@@ -0,0 +1,76 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.max.progressbarview.test.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures time and allocations of inflating a {@link ProgressBarView} from xml with every
+ * attribute set, and of its first layout, where the geometry is computed. Results are written
+ * to logcat under this class' name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InflationBenchmark {
+
+    private static final String TAG = InflationBenchmark.class.getSimpleName();
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 150;
+    private static final int WARM_UP_INFLATIONS = 50;
+    private static final int INFLATIONS = 500;
+
+    @Test
+    public void inflate() throws Throwable {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                measure();
+            }
+        });
+    }
+
+    @SuppressWarnings("deprecation")
+    private void measure() {
+        Context context = InstrumentationRegistry.getContext();
+        LayoutInflater inflater = LayoutInflater.from(context);
+        View[] views = new View[INFLATIONS];
+        for (int i = 0; i < WARM_UP_INFLATIONS; i++) {
+            inflater.inflate(R.layout.benchmark_progress_bar_view, null);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        long start = System.nanoTime();
+        for (int i = 0; i < INFLATIONS; i++) {
+            views[i] = inflater.inflate(R.layout.benchmark_progress_bar_view, null);
+        }
+        long inflationNanos = System.nanoTime() - start;
+        int allocations = Debug.getThreadAllocCount();
+        int allocatedBytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        start = System.nanoTime();
+        for (View view : views) {
+            view.measure(
+                    View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            view.layout(0, 0, WIDTH, HEIGHT);
+        }
+        long layoutNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("Per inflation: %d ns, %d allocations, %d bytes; first layout: %d ns",
+                inflationNanos / INFLATIONS, allocations / INFLATIONS, allocatedBytes / INFLATIONS,
+                layoutNanos / INFLATIONS));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures raster time of drag-like frames, where only the primary progress and the thumb move,
+ * with and without the cached track layer. Results are written to logcat under this class' name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrackLayerCacheBenchmark {
+
+    private static final String TAG = TrackLayerCacheBenchmark.class.getSimpleName();
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 150;
+    private static final int WARM_UP_FRAMES = 200;
+    private static final int FRAMES = 2000;
+
+    @Test
+    public void drawDragFrames() throws Throwable {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                long uncached = measure(false);
+                long cached = measure(true);
+                Log.i(TAG, String.format("Average frame: %d ns uncached, %d ns cached (%.1f%% saved)",
+                        uncached, cached, 100f * (uncached - cached) / uncached));
+            }
+        });
+    }
+
+    /**
+     * @return Average nanos spent drawing one frame.
+     */
+    private long measure(boolean trackCacheEnabled) {
+        Context context = InstrumentationRegistry.getTargetContext();
+        ProgressBarView progressBarView = new ProgressBarView(context);
+        progressBarView.setTrackCacheEnabled(trackCacheEnabled);
+        progressBarView.edit()
+                .setMaxProgressValue(FRAMES)
+                .setSecondaryProgressValue(FRAMES * 0.75f)
+                .apply();
+        progressBarView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        progressBarView.layout(0, 0, WIDTH, HEIGHT);
+
+        Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            drawFrame(progressBarView, canvas, i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            drawFrame(progressBarView, canvas, i);
+        }
+        return (System.nanoTime() - start) / FRAMES;
+    }
+
+    private void drawFrame(ProgressBarView progressBarView, Canvas canvas, int frame) {
+        progressBarView.edit().setPrimaryProgressValue(frame).apply();
+        progressBarView.draw(canvas);
+    }
+
+}
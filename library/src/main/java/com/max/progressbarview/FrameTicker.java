@@ -0,0 +1,149 @@
+package com.max.progressbarview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Runs a callback at most once per display frame. Scheduling while a frame is already scheduled
+ * is a no-op, which is what coalesces bursts of updates into a single pass per vsync.
+ * <p>
+ * Backed by {@link Choreographer} where available and by a main thread {@link Handler} on older
+ * platforms. Must be used from the UI thread.
+ */
+abstract class FrameTicker {
+
+    interface Callback {
+
+        /**
+         * @param frameTimeNanos Time the frame started rendering, in {@link System#nanoTime()} base.
+         */
+        void onFrame(long frameTimeNanos);
+
+    }
+
+    /**
+     * Creates tickers bound to a callback, which lets tests drive frames by hand.
+     */
+    interface Factory {
+
+        FrameTicker create(Callback callback);
+
+    }
+
+    /**
+     * Delay used by the Handler fallback, roughly one frame at 60Hz.
+     */
+    private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+
+    private final Callback callback;
+
+    private boolean scheduled = false;
+
+    FrameTicker(Callback callback) {
+        this.callback = callback;
+    }
+
+    static FrameTicker create(Callback callback) {
+        if (Build.VERSION.SDK_INT >= 16) {
+            return new ChoreographerFrameTicker(callback);
+        }
+        return new HandlerFrameTicker(callback);
+    }
+
+    /**
+     * Schedules the callback for the next frame, unless it is already scheduled.
+     */
+    final void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            post();
+        }
+    }
+
+    /**
+     * Cancels a scheduled callback.
+     */
+    final void cancel() {
+        if (scheduled) {
+            scheduled = false;
+            remove();
+        }
+    }
+
+    final boolean isScheduled() {
+        return scheduled;
+    }
+
+    final void dispatchFrame(long frameTimeNanos) {
+        scheduled = false;
+        callback.onFrame(frameTimeNanos);
+    }
+
+    /**
+     * @return Current time in the base of frame times.
+     */
+    long nowNanos() {
+        return System.nanoTime();
+    }
+
+    abstract void post();
+
+    abstract void remove();
+
+    @TargetApi(16)
+    private static final class ChoreographerFrameTicker extends FrameTicker
+            implements Choreographer.FrameCallback {
+
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        ChoreographerFrameTicker(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        void remove() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchFrame(frameTimeNanos);
+        }
+
+    }
+
+    private static final class HandlerFrameTicker extends FrameTicker implements Runnable {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        HandlerFrameTicker(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        void post() {
+            handler.postDelayed(this, FALLBACK_FRAME_DELAY_MILLIS);
+        }
+
+        @Override
+        void remove() {
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            dispatchFrame(SystemClock.uptimeMillis() * 1000000L);
+        }
+
+    }
+
+}
@@ -0,0 +1,346 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Displays many progress bars, such as a transfer dashboard, as a single view.
+ * <p>
+ * Values of every row are kept in parallel primitive arrays. Each row's track, secondary and
+ * primary progress are stored as lines as thick as the bar, so all rows are drawn with three
+ * drawLines calls, limited to the rows inside the canvas' clip. Updating a row only recomputes
+ * that row's lines and invalidates its rectangle.
+ * <p>
+ * Rows are drawn like a {@link ProgressBarView} without thumb, with colors taken from a
+ * {@link ProgressBarStyle} or the same xml attributes. Must be used from the UI thread.
+ */
+public class MultiProgressBarView extends View {
+
+    /**
+     * Same ratio of bar to row height as {@link ProgressBarView}'s default.
+     */
+    private static final float BAR_HEIGHT_COEFFICIENT = 0.2f;
+
+    private static final int LINE_SIZE = 4;
+
+    //region Values
+
+    private int barCount = 0;
+
+    private float[] minProgressValues = new float[0];
+    private float[] maxProgressValues = new float[0];
+    private float[] primaryProgressValues = new float[0];
+    private float[] secondaryProgressValues = new float[0];
+
+    //endregion
+
+    //region Drawing
+
+    private int rowHeight;
+    private int rowSpacing = 0;
+
+    private Paint barPaint;
+    private Paint primaryProgressPaint;
+    private Paint secondaryProgressPaint;
+
+    /**
+     * One line per row, as x0, y, x1, y, for track, secondary and primary progress.
+     */
+    private float[] barLines = new float[0];
+    private float[] secondaryProgressLines = new float[0];
+    private float[] primaryProgressLines = new float[0];
+
+    private final Rect clipBounds = new Rect();
+
+    //endregion
+
+    //region Constructor
+
+    public MultiProgressBarView(Context context) {
+        super(context);
+        setStyle(ProgressBarStyle.getDefault(context));
+    }
+
+    public MultiProgressBarView(Context context, ProgressBarStyle style) {
+        super(context);
+        setStyle(style);
+    }
+
+    public MultiProgressBarView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public MultiProgressBarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setStyle(attrs != null ?
+                ProgressBarStyle.fromAttributes(context, attrs, defStyleAttr, 0) :
+                ProgressBarStyle.getDefault(context));
+    }
+
+    //endregion
+
+    //region Getters
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    public float getMinProgressValue(int row) {
+        return minProgressValues[checkRow(row)];
+    }
+
+    public float getMaxProgressValue(int row) {
+        return maxProgressValues[checkRow(row)];
+    }
+
+    public float getPrimaryProgressValue(int row) {
+        return primaryProgressValues[checkRow(row)];
+    }
+
+    public float getSecondaryProgressValue(int row) {
+        return secondaryProgressValues[checkRow(row)];
+    }
+
+    public int getRowHeight() {
+        return rowHeight;
+    }
+
+    public int getRowSpacing() {
+        return rowSpacing;
+    }
+
+    //endregion
+
+    //region Setters
+
+    /**
+     * Sets the number of rows. Existing rows keep their values, new rows range from 0 to 1 with
+     * no progress.
+     */
+    public void setBarCount(int barCount) {
+        if (barCount < 0) {
+            throw new IllegalArgumentException("barCount must not be negative");
+        }
+        if (barCount == this.barCount) {
+            return;
+        }
+        if (barCount > minProgressValues.length) {
+            int capacity = Math.max(barCount, minProgressValues.length * 2);
+            minProgressValues = grow(minProgressValues, capacity);
+            maxProgressValues = grow(maxProgressValues, capacity);
+            primaryProgressValues = grow(primaryProgressValues, capacity);
+            secondaryProgressValues = grow(secondaryProgressValues, capacity);
+            barLines = grow(barLines, capacity * LINE_SIZE);
+            secondaryProgressLines = grow(secondaryProgressLines, capacity * LINE_SIZE);
+            primaryProgressLines = grow(primaryProgressLines, capacity * LINE_SIZE);
+        }
+        for (int row = this.barCount; row < barCount; row++) {
+            minProgressValues[row] = 0;
+            maxProgressValues[row] = 1;
+            primaryProgressValues[row] = 0;
+            secondaryProgressValues[row] = 0;
+        }
+        int previousCount = this.barCount;
+        this.barCount = barCount;
+        for (int row = previousCount; row < barCount; row++) {
+            updateRowLines(row);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Sets every value of a row, invalidating only that row's rectangle.
+     */
+    public void setBar(int row, float minProgressValue, float maxProgressValue,
+                       float primaryProgressValue, float secondaryProgressValue) {
+        checkRow(row);
+        minProgressValues[row] = minProgressValue;
+        maxProgressValues[row] = maxProgressValue;
+        primaryProgressValues[row] = primaryProgressValue;
+        secondaryProgressValues[row] = secondaryProgressValue;
+        invalidateRow(row);
+    }
+
+    public void setPrimaryProgressValue(int row, float primaryProgressValue) {
+        if (primaryProgressValues[checkRow(row)] == primaryProgressValue) {
+            return;
+        }
+        primaryProgressValues[row] = primaryProgressValue;
+        invalidateRow(row);
+    }
+
+    public void setSecondaryProgressValue(int row, float secondaryProgressValue) {
+        if (secondaryProgressValues[checkRow(row)] == secondaryProgressValue) {
+            return;
+        }
+        secondaryProgressValues[row] = secondaryProgressValue;
+        invalidateRow(row);
+    }
+
+    /**
+     * @param rowHeight in pixels, the bar is a fifth of it.
+     */
+    public void setRowHeight(int rowHeight) {
+        this.rowHeight = rowHeight;
+        updateAllLines();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * @param rowSpacing Space between rows in pixels.
+     */
+    public void setRowSpacing(int rowSpacing) {
+        this.rowSpacing = rowSpacing;
+        updateAllLines();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Takes bar colors from style, and its thumb size as row height.
+     */
+    public void setStyle(ProgressBarStyle style) {
+        style.preparePaints();
+        // Stroke widths follow the row height, so paints can't be shared
+        this.barPaint = new Paint(style.getBarPaint());
+        this.primaryProgressPaint = new Paint(style.getPrimaryProgressPaint());
+        this.secondaryProgressPaint = new Paint(style.getSecondaryProgressPaint());
+        setRowHeight(style.getThumbSize());
+    }
+
+    //endregion
+
+    //region Overrides
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int height = getPaddingTop() + getPaddingBottom();
+        if (barCount > 0) {
+            height += barCount * rowHeight + (barCount - 1) * rowSpacing;
+        }
+        setMeasuredDimension(
+                getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateAllLines();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        // A zero stroke width would draw hairlines
+        if (barCount == 0 || barPaint.getStrokeWidth() <= 0) {
+            return;
+        }
+        // Only rows intersecting the clip, a single row after invalidateRow when rendering in
+        // software. Hardware accelerated canvases record the whole view.
+        int firstRow = 0;
+        int lastRow = barCount - 1;
+        if (canvas.getClipBounds(clipBounds)) {
+            firstRow = Math.max(firstRow, rowAt(clipBounds.top));
+            lastRow = Math.min(lastRow, rowAt(clipBounds.bottom - 1));
+        }
+        if (firstRow > lastRow) {
+            return;
+        }
+        int offset = firstRow * LINE_SIZE;
+        int count = (lastRow - firstRow + 1) * LINE_SIZE;
+        canvas.drawLines(barLines, offset, count, barPaint);
+        canvas.drawLines(secondaryProgressLines, offset, count, secondaryProgressPaint);
+        canvas.drawLines(primaryProgressLines, offset, count, primaryProgressPaint);
+    }
+
+    //endregion
+
+    //region Private
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= barCount) {
+            throw new IndexOutOfBoundsException("row " + row + ", bar count " + barCount);
+        }
+        return row;
+    }
+
+    /**
+     * @return Row at y, possibly outside [0, barCount).
+     */
+    private int rowAt(int y) {
+        int pitch = rowHeight + rowSpacing;
+        return pitch <= 0 ? 0 : Math.max(0, y - getPaddingTop()) / pitch;
+    }
+
+    private int getRowTop(int row) {
+        return getPaddingTop() + row * (rowHeight + rowSpacing);
+    }
+
+    /**
+     * Recomputes a row's lines and invalidates only its rectangle.
+     */
+    private void invalidateRow(int row) {
+        updateRowLines(row);
+        int top = getRowTop(row);
+        invalidate(getPaddingLeft(), top, getWidth() - getPaddingRight(), top + rowHeight);
+    }
+
+    private void updateAllLines() {
+        float barHeight = (int) (BAR_HEIGHT_COEFFICIENT * rowHeight);
+        barPaint.setStrokeWidth(barHeight);
+        secondaryProgressPaint.setStrokeWidth(barHeight);
+        primaryProgressPaint.setStrokeWidth(barHeight);
+        for (int row = 0; row < barCount; row++) {
+            updateRowLines(row);
+        }
+    }
+
+    /**
+     * Converts a row's values to its track, secondary and primary lines. Progress outside the
+     * row's range is clamped to the bar.
+     */
+    private void updateRowLines(int row) {
+        float left = getPaddingLeft();
+        float width = Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+        float y = getRowTop(row) + rowHeight / 2f;
+        float min = minProgressValues[row];
+        float range = maxProgressValues[row] - min;
+        float secondaryX = left + width * fraction(secondaryProgressValues[row], min, range);
+        float primaryX = left + width * fraction(primaryProgressValues[row], min, range);
+        int index = row * LINE_SIZE;
+        setLine(barLines, index, left, left + width, y);
+        setLine(secondaryProgressLines, index, left, secondaryX, y);
+        setLine(primaryProgressLines, index, left, primaryX, y);
+    }
+
+    private static float fraction(float value, float min, float range) {
+        if (range <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (value - min) / range));
+    }
+
+    private static void setLine(float[] lines, int index, float startX, float endX, float y) {
+        lines[index] = startX;
+        lines[index + 1] = y;
+        lines[index + 2] = endX;
+        lines[index + 3] = y;
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        float[] grown = new float[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    //endregion
+
+}
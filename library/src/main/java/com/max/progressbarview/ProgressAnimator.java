@@ -0,0 +1,121 @@
+package com.max.progressbarview;
+
+import android.animation.TimeInterpolator;
+
+/**
+ * Interpolates the displayed primary and secondary progress towards their target values from
+ * frame time, using primitive fields only so that stepping never allocates or boxes.
+ * <p>
+ * Setting a new target while animating continues from the currently displayed value, so the bar
+ * never jumps back. An animation starts on the first frame after its target was set.
+ */
+final class ProgressAnimator {
+
+    static final int PRIMARY = 0;
+    static final int SECONDARY = 1;
+
+    private static final int CHANNELS = 2;
+
+    /**
+     * Marks a channel whose animation will start on the next frame.
+     */
+    private static final long NOT_STARTED = -1;
+
+    private final double[] fromValues = new double[CHANNELS];
+    private final double[] toValues = new double[CHANNELS];
+    private final double[] currentValues = new double[CHANNELS];
+    private final long[] startTimesNanos = new long[CHANNELS];
+    private final boolean[] running = new boolean[CHANNELS];
+
+    private long durationNanos;
+
+    private TimeInterpolator interpolator;
+
+    ProgressAnimator(long durationMillis, TimeInterpolator interpolator) {
+        setDuration(durationMillis);
+        this.interpolator = interpolator;
+    }
+
+    void setDuration(long durationMillis) {
+        this.durationNanos = durationMillis * 1000000L;
+    }
+
+    long getDuration() {
+        return durationNanos / 1000000L;
+    }
+
+    void setInterpolator(TimeInterpolator interpolator) {
+        this.interpolator = interpolator;
+    }
+
+    TimeInterpolator getInterpolator() {
+        return interpolator;
+    }
+
+    /**
+     * Sets a channel's value without animating, cancelling any running animation.
+     */
+    void jumpTo(int channel, double value) {
+        fromValues[channel] = value;
+        toValues[channel] = value;
+        currentValues[channel] = value;
+        running[channel] = false;
+    }
+
+    /**
+     * Animates a channel from its currently displayed value to value.
+     */
+    void animateTo(int channel, double value) {
+        if (running[channel] ? toValues[channel] == value : currentValues[channel] == value) {
+            return;
+        }
+        if (durationNanos <= 0) {
+            jumpTo(channel, value);
+            return;
+        }
+        fromValues[channel] = currentValues[channel];
+        toValues[channel] = value;
+        startTimesNanos[channel] = NOT_STARTED;
+        running[channel] = true;
+    }
+
+    double getValue(int channel) {
+        return currentValues[channel];
+    }
+
+    boolean isRunning() {
+        return running[PRIMARY] || running[SECONDARY];
+    }
+
+    boolean isRunning(int channel) {
+        return running[channel];
+    }
+
+    /**
+     * Advances every running channel to the given frame time.
+     * @return True while some channel still needs frames.
+     */
+    boolean step(long frameTimeNanos) {
+        boolean needsFrame = false;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            if (!running[channel]) {
+                continue;
+            }
+            if (startTimesNanos[channel] == NOT_STARTED) {
+                startTimesNanos[channel] = frameTimeNanos;
+            }
+            float fraction = (float) (frameTimeNanos - startTimesNanos[channel]) / durationNanos;
+            if (fraction >= 1) {
+                jumpTo(channel, toValues[channel]);
+                continue;
+            }
+            float interpolated = interpolator != null ?
+                    interpolator.getInterpolation(fraction) : fraction;
+            currentValues[channel] = fromValues[channel]
+                    + (toValues[channel] - fromValues[channel]) * interpolated;
+            needsFrame = true;
+        }
+        return needsFrame;
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Drawable rendering of {@link ProgressBarView}, for rows that only display progress and don't
+ * need a view of their own, e.g. as a compound drawable or background of a TextView.
+ * <p>
+ * It shares geometry and drawing code with the view. Progress is set either with
+ * {@link #setPrimaryProgressValue(float)} or through {@link #setLevel(int)}, where 10000 is the
+ * max progress value. The thumb is hidden by default, and the bar fills the bounds' height.
+ */
+public class ProgressBarDrawable extends Drawable {
+
+    private static final float MAX_LEVEL = 10000f;
+
+    private final ProgressBarGeometry geometry;
+
+    private final ProgressBarRenderer renderer;
+
+    private float maxProgressValue = 1;
+    private float primaryProgressValue = 0;
+    private float secondaryProgressValue = 0;
+
+    private int thumbSize;
+    private boolean thumbVisible = false;
+
+    private int intrinsicWidth = -1;
+    private int intrinsicHeight = -1;
+
+    private int alpha = 255;
+
+    private ColorFilter colorFilter;
+
+    public ProgressBarDrawable(Context context) {
+        this(ProgressBarStyle.getDefault(context));
+    }
+
+    /**
+     * Creates a drawable sharing style's paints, without any resource lookup.
+     */
+    public ProgressBarDrawable(ProgressBarStyle style) {
+        this.geometry = new ProgressBarGeometry();
+        this.geometry.setBarHeightCoefficient(1);
+        this.renderer = new ProgressBarRenderer(geometry);
+        this.renderer.setThumbVisible(false);
+        setStyle(style);
+    }
+
+    //region Getters
+
+    public float getMaxProgressValue() {
+        return maxProgressValue;
+    }
+
+    public float getPrimaryProgressValue() {
+        return primaryProgressValue;
+    }
+
+    public float getSecondaryProgressValue() {
+        return secondaryProgressValue;
+    }
+
+    public boolean isThumbVisible() {
+        return thumbVisible;
+    }
+
+    //endregion
+
+    //region Setters
+
+    public void setMaxProgressValue(float maxProgressValue) {
+        this.maxProgressValue = maxProgressValue;
+        this.geometry.setMaxProgressValue(maxProgressValue);
+        invalidateSelf();
+    }
+
+    public void setPrimaryProgressValue(float primaryProgressValue) {
+        if (this.primaryProgressValue == primaryProgressValue) {
+            return;
+        }
+        this.primaryProgressValue = primaryProgressValue;
+        this.geometry.setPrimaryProgressValue(primaryProgressValue);
+        invalidateSelf();
+    }
+
+    /**
+     * Shows the single secondary progress range [0, secondaryProgressValue].
+     */
+    public void setSecondaryProgressValue(float secondaryProgressValue) {
+        if (this.secondaryProgressValue == secondaryProgressValue) {
+            return;
+        }
+        this.secondaryProgressValue = secondaryProgressValue;
+        ProgressRanges ranges = renderer.getSecondaryProgressRanges();
+        ranges.set(0, secondaryProgressValue);
+        if (ranges.hasChanged()) {
+            geometry.invalidateSecondaryProgress(ranges.getChangedStart(), ranges.getChangedEnd());
+            ranges.clearChangedSpan();
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * @param barHeightCoefficient Height of the bar as a fraction of the bounds' height, 1 by
+     *                             default.
+     */
+    public void setBarHeightCoefficient(float barHeightCoefficient) {
+        this.geometry.setBarHeightCoefficient(barHeightCoefficient);
+        invalidateSelf();
+    }
+
+    /**
+     * Shows the thumb at the primary progress, at most as tall as the bounds. Like the view's,
+     * the bar still spans the whole width, so at 0 and max half the thumb lies outside the
+     * bounds.
+     */
+    public void setThumbVisible(boolean thumbVisible) {
+        this.thumbVisible = thumbVisible;
+        this.renderer.setThumbVisible(thumbVisible);
+        updateThumbSize();
+        invalidateSelf();
+    }
+
+    /**
+     * Applies a style's colors and sizes, sharing its paints.
+     */
+    public void setStyle(ProgressBarStyle style) {
+        this.renderer.applyStyle(style);
+        if (alpha != 255) {
+            this.renderer.setAlpha(alpha);
+        }
+        if (colorFilter != null) {
+            this.renderer.setColorFilter(colorFilter);
+        }
+        this.thumbSize = style.getThumbSize();
+        updateThumbSize();
+        invalidateSelf();
+    }
+
+    /**
+     * Sets the size reported to layouts that size drawables intrinsically, such as compound
+     * drawables. Both are -1 by default, meaning the drawable fills whatever bounds it gets.
+     */
+    public void setIntrinsicSize(int width, int height) {
+        this.intrinsicWidth = width;
+        this.intrinsicHeight = height;
+    }
+
+    /**
+     * @param markers Marker positions in progress values, in any order. Copied.
+     */
+    public void setMarkers(float[] markers) {
+        this.renderer.setMarkers(markers);
+        invalidateSelf();
+    }
+
+    //endregion
+
+    //region Drawable
+
+    @Override
+    public void draw(Canvas canvas) {
+        renderer.update();
+        // Drawables are always redrawn whole
+        geometry.clearDirtyRegion();
+        Rect bounds = getBounds();
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        renderer.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        geometry.setLayout(bounds.width(), bounds.height(), 0, 0);
+        updateThumbSize();
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        float value = level / MAX_LEVEL * maxProgressValue;
+        if (value == primaryProgressValue) {
+            return false;
+        }
+        setPrimaryProgressValue(value);
+        return true;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return intrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return intrinsicHeight;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha == alpha) {
+            return;
+        }
+        this.alpha = alpha;
+        renderer.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    // Overrides Drawable.getAlpha() from API 19
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        this.colorFilter = colorFilter;
+        renderer.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    //endregion
+
+    /**
+     * Hidden thumbs take no room, visible ones are at most as tall as the bounds.
+     */
+    private void updateThumbSize() {
+        int height = getBounds().height();
+        int size = thumbVisible ? thumbSize : 0;
+        if (height > 0 && size > height) {
+            size = height;
+        }
+        geometry.setThumbSize(size);
+    }
+
+}
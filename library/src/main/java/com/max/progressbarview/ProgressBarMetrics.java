@@ -0,0 +1,114 @@
+package com.max.progressbarview;
+
+/**
+ * Counters and timers of what a {@link ProgressBarView} did since metrics were enabled or last
+ * reset, e.g. to tell whether the bar takes part in a janky screen.
+ * <p>
+ * Values are primitive longs, updated by the view without allocating. The view keeps its own
+ * instance, read it with {@link ProgressBarView#getMetrics(ProgressBarMetrics)} which copies the
+ * current values into one owned by the caller, so a snapshot can be reused between reads.
+ */
+public final class ProgressBarMetrics {
+
+    long invalidationRequestCount;
+    long coalescedInvalidationCount;
+    long drawCount;
+    long drawTimeNanos;
+    long dispatchCount;
+    long dispatchTimeNanos;
+    long touchEventCount;
+    long geometryUpdateCount;
+
+    //region Getters
+
+    /**
+     * @return Times a change asked for a redraw, either directly or through the next frame.
+     */
+    public long getInvalidationRequestCount() {
+        return invalidationRequestCount;
+    }
+
+    /**
+     * @return Requests that didn't cost a redraw or a frame of their own, because a frame was
+     * already scheduled or nothing visible moved.
+     */
+    public long getCoalescedInvalidationCount() {
+        return coalescedInvalidationCount;
+    }
+
+    public long getDrawCount() {
+        return drawCount;
+    }
+
+    /**
+     * @return Time spent in onDraw, including geometry updates done there.
+     */
+    public long getDrawTimeNanos() {
+        return drawTimeNanos;
+    }
+
+    /**
+     * @return Times progress was delivered to listeners, counting every delivery pass once
+     * regardless of the number of listeners.
+     */
+    public long getDispatchCount() {
+        return dispatchCount;
+    }
+
+    public long getDispatchTimeNanos() {
+        return dispatchTimeNanos;
+    }
+
+    public long getTouchEventCount() {
+        return touchEventCount;
+    }
+
+    /**
+     * @return Geometry updates that actually recomputed something.
+     */
+    public long getGeometryUpdateCount() {
+        return geometryUpdateCount;
+    }
+
+    //endregion
+
+    /**
+     * Copies every value of other.
+     */
+    public void set(ProgressBarMetrics other) {
+        this.invalidationRequestCount = other.invalidationRequestCount;
+        this.coalescedInvalidationCount = other.coalescedInvalidationCount;
+        this.drawCount = other.drawCount;
+        this.drawTimeNanos = other.drawTimeNanos;
+        this.dispatchCount = other.dispatchCount;
+        this.dispatchTimeNanos = other.dispatchTimeNanos;
+        this.touchEventCount = other.touchEventCount;
+        this.geometryUpdateCount = other.geometryUpdateCount;
+    }
+
+    public void reset() {
+        this.invalidationRequestCount = 0;
+        this.coalescedInvalidationCount = 0;
+        this.drawCount = 0;
+        this.drawTimeNanos = 0;
+        this.dispatchCount = 0;
+        this.dispatchTimeNanos = 0;
+        this.touchEventCount = 0;
+        this.geometryUpdateCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressBarMetrics{" +
+                "invalidationRequestCount=" + invalidationRequestCount +
+                ", coalescedInvalidationCount=" + coalescedInvalidationCount +
+                ", drawCount=" + drawCount +
+                ", drawTimeNanos=" + drawTimeNanos +
+                ", dispatchCount=" + dispatchCount +
+                ", dispatchTimeNanos=" + dispatchTimeNanos +
+                ", touchEventCount=" + touchEventCount +
+                ", geometryUpdateCount=" + geometryUpdateCount +
+                '}';
+    }
+
+}
@@ -0,0 +1,580 @@
+package com.max.progressbarview;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Draws a progress bar from a {@link ProgressBarGeometry}, shared by {@link ProgressBarView}
+ * and {@link ProgressBarDrawable}.
+ * <p>
+ * Owns the paints, taken from a {@link ProgressBarStyle} and copied only when a value is
+ * overridden, and everything derived from the geometry for drawing: rectangles and the line
+ * arrays of secondary progress ranges, markers and waveform, and the rectangles of range
+ * thumbs. {@link #update()} refreshes only the parts whose geometry changed,
+ * {@link #draw(Canvas)} never allocates.
+ */
+final class ProgressBarRenderer {
+
+    private final ProgressBarGeometry geometry;
+
+    //region Paint
+
+    /**
+     * Style whose paints are shared until a setter overrides one of their values.
+     */
+    private ProgressBarStyle style;
+
+    private Paint barPaint;
+    private Paint primaryProgressPaint;
+    private Paint secondaryProgressPaint;
+    private Paint thumbFillPaint;
+    private Paint thumbStrokePaint;
+    private Paint markerPaint;
+    private Paint waveformPaint;
+
+    //endregion
+
+    //region Rectangles
+
+    private final RectF barRect = new RectF();
+    private final RectF primaryProgressRect = new RectF();
+    private final RectF thumbRect = new RectF();
+
+    private boolean thumbVisible = true;
+
+    //endregion
+
+    //region Range thumbs
+
+    /**
+     * Thumbs drawn instead of the primary progress thumb when not empty.
+     */
+    private final RangeThumbs rangeThumbs = new RangeThumbs();
+
+    /**
+     * One rectangle per range thumb, reused until more thumbs are needed.
+     */
+    private RectF[] rangeThumbRects = new RectF[0];
+    private boolean rangeThumbsDirty = false;
+
+    /**
+     * Thumb size the range thumb rectangles were computed with.
+     */
+    private float rangeThumbSize = 0;
+
+    //endregion
+
+    //region Secondary progress
+
+    /**
+     * Buffered ranges of the secondary progress.
+     */
+    private final ProgressRanges secondaryProgressRanges = new ProgressRanges();
+
+    /**
+     * One horizontal line per secondary progress range, as x0, y0, x1, y1, so all ranges are
+     * drawn with a single drawLines call. Reused until more ranges are needed.
+     */
+    private float[] secondaryProgressLines = new float[4];
+    private int secondaryProgressLineCount = 0;
+
+    //endregion
+
+    //region Markers
+
+    /**
+     * Sorted marker positions, in progress values.
+     */
+    private float[] markerPositions = new float[0];
+
+    /**
+     * One vertical line per visible marker, as x, y0, x, y1, drawn with a single drawLines call.
+     * Rebuilt only when markers, size or range change.
+     */
+    private float[] markerLines = new float[0];
+    private int markerLineCount = 0;
+    private boolean markerLinesDirty = false;
+
+    //endregion
+
+    //region Waveform
+
+    private WaveformPyramid waveformPyramid;
+
+    /**
+     * One vertical min to max line per pixel column of the bar, drawn with a single drawLines
+     * call. Rebuilt only when samples or size change.
+     */
+    private float[] waveformMins = new float[0];
+    private float[] waveformMaxs = new float[0];
+    private float[] waveformLines = new float[0];
+    private int waveformLineCount = 0;
+    private boolean waveformLinesDirty = false;
+
+    //endregion
+
+    /**
+     * Caches bar and secondary progress in a bitmap when not null.
+     */
+    private TrackLayerCache trackLayerCache;
+
+    ProgressBarRenderer(ProgressBarGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    //region Getters
+
+    ProgressBarStyle getStyle() {
+        return style;
+    }
+
+    RectF getBarRect() {
+        return barRect;
+    }
+
+    ProgressRanges getSecondaryProgressRanges() {
+        return secondaryProgressRanges;
+    }
+
+    RangeThumbs getRangeThumbs() {
+        return rangeThumbs;
+    }
+
+    RectF getRangeThumbRect(int index) {
+        return rangeThumbRects[index];
+    }
+
+    float getThumbBorderSize() {
+        return thumbStrokePaint.getStrokeWidth();
+    }
+
+    float getMarkerWidth() {
+        return markerPaint.getStrokeWidth();
+    }
+
+    int getMarkerCount() {
+        return markerPositions.length;
+    }
+
+    float getMarker(int index) {
+        return markerPositions[index];
+    }
+
+    WaveformPyramid getWaveformPyramid() {
+        return waveformPyramid;
+    }
+
+    boolean isTrackCacheEnabled() {
+        return trackLayerCache != null;
+    }
+
+    //endregion
+
+    //region Setters
+
+    /**
+     * Takes colors and sizes from style and shares its paints, without any resource lookup.
+     */
+    void applyStyle(ProgressBarStyle style) {
+        style.preparePaints();
+        this.style = style;
+        this.barPaint = style.getBarPaint();
+        this.primaryProgressPaint = style.getPrimaryProgressPaint();
+        // Its stroke width follows the bar height, so it can't be shared
+        this.secondaryProgressPaint = new Paint(style.getSecondaryProgressPaint());
+        this.secondaryProgressPaint.setStrokeWidth(geometry.getBarHeight());
+        this.thumbFillPaint = style.getThumbFillPaint();
+        this.thumbStrokePaint = style.getThumbStrokePaint();
+        this.markerPaint = style.getMarkerPaint();
+        this.waveformPaint = style.getWaveformPaint();
+        invalidateTrackLayer();
+    }
+
+    void setBarColor(int barColor) {
+        this.barPaint = ownPaint(this.barPaint);
+        this.barPaint.setColor(barColor);
+        invalidateTrackLayer();
+    }
+
+    void setPrimaryColor(int primaryColor) {
+        this.primaryProgressPaint = ownPaint(this.primaryProgressPaint);
+        this.primaryProgressPaint.setColor(primaryColor);
+    }
+
+    void setSecondaryColor(int secondaryColor) {
+        this.secondaryProgressPaint.setColor(secondaryColor);
+        invalidateTrackLayer();
+    }
+
+    void setThumbFillColor(int thumbFillColor) {
+        this.thumbFillPaint = ownPaint(this.thumbFillPaint);
+        this.thumbFillPaint.setColor(thumbFillColor);
+    }
+
+    void setThumbStrokeColor(int thumbStrokeColor) {
+        this.thumbStrokePaint = ownPaint(this.thumbStrokePaint);
+        this.thumbStrokePaint.setColor(thumbStrokeColor);
+    }
+
+    void setMarkerColor(int markerColor) {
+        this.markerPaint = ownPaint(this.markerPaint);
+        this.markerPaint.setColor(markerColor);
+    }
+
+    void setWaveformColor(int waveformColor) {
+        this.waveformPaint = ownPaint(this.waveformPaint);
+        this.waveformPaint.setColor(waveformColor);
+    }
+
+    void setThumbBorderSize(float thumbBorderSize) {
+        this.thumbStrokePaint = ownPaint(this.thumbStrokePaint);
+        this.thumbStrokePaint.setStrokeWidth(thumbBorderSize);
+    }
+
+    void setMarkerWidth(float markerWidth) {
+        this.markerPaint = ownPaint(this.markerPaint);
+        this.markerPaint.setStrokeWidth(markerWidth);
+    }
+
+    void setThumbVisible(boolean thumbVisible) {
+        this.thumbVisible = thumbVisible;
+    }
+
+    /**
+     * Multiplies the alpha of every paint's style color by alpha, copying the shared paints.
+     */
+    void setAlpha(int alpha) {
+        this.barPaint = ownPaint(this.barPaint);
+        this.barPaint.setAlpha(modulateAlpha(style.getBarColor(), alpha));
+        this.primaryProgressPaint = ownPaint(this.primaryProgressPaint);
+        this.primaryProgressPaint.setAlpha(modulateAlpha(style.getPrimaryColor(), alpha));
+        this.secondaryProgressPaint.setAlpha(modulateAlpha(style.getSecondaryColor(), alpha));
+        this.thumbFillPaint = ownPaint(this.thumbFillPaint);
+        this.thumbFillPaint.setAlpha(modulateAlpha(style.getThumbFillColor(), alpha));
+        this.thumbStrokePaint = ownPaint(this.thumbStrokePaint);
+        this.thumbStrokePaint.setAlpha(modulateAlpha(style.getThumbStrokeColor(), alpha));
+        this.markerPaint = ownPaint(this.markerPaint);
+        this.markerPaint.setAlpha(modulateAlpha(style.getMarkerColor(), alpha));
+        this.waveformPaint = ownPaint(this.waveformPaint);
+        this.waveformPaint.setAlpha(modulateAlpha(style.getWaveformColor(), alpha));
+        invalidateTrackLayer();
+    }
+
+    /**
+     * Sets the color filter of every paint, copying the shared ones.
+     */
+    void setColorFilter(ColorFilter colorFilter) {
+        this.barPaint = ownPaint(this.barPaint);
+        this.barPaint.setColorFilter(colorFilter);
+        this.primaryProgressPaint = ownPaint(this.primaryProgressPaint);
+        this.primaryProgressPaint.setColorFilter(colorFilter);
+        this.secondaryProgressPaint.setColorFilter(colorFilter);
+        this.thumbFillPaint = ownPaint(this.thumbFillPaint);
+        this.thumbFillPaint.setColorFilter(colorFilter);
+        this.thumbStrokePaint = ownPaint(this.thumbStrokePaint);
+        this.thumbStrokePaint.setColorFilter(colorFilter);
+        this.markerPaint = ownPaint(this.markerPaint);
+        this.markerPaint.setColorFilter(colorFilter);
+        this.waveformPaint = ownPaint(this.waveformPaint);
+        this.waveformPaint.setColorFilter(colorFilter);
+        invalidateTrackLayer();
+    }
+
+    /**
+     * @param positions Marker positions in progress values, in any order. Copied.
+     */
+    void setMarkers(float[] positions) {
+        if (markerPositions.length != positions.length) {
+            markerPositions = new float[positions.length];
+        }
+        System.arraycopy(positions, 0, markerPositions, 0, positions.length);
+        Arrays.sort(markerPositions);
+        if (markerLines.length < positions.length * 4) {
+            markerLines = new float[positions.length * 4];
+        }
+        markerLinesDirty = true;
+    }
+
+    /**
+     * Recomputes every range thumb on the next update, e.g. after their values were set.
+     */
+    void invalidateRangeThumbs() {
+        int size = rangeThumbs.size();
+        if (rangeThumbRects.length < size) {
+            RectF[] rects = new RectF[size];
+            System.arraycopy(rangeThumbRects, 0, rects, 0, rangeThumbRects.length);
+            for (int i = rangeThumbRects.length; i < size; i++) {
+                rects[i] = new RectF();
+            }
+            rangeThumbRects = rects;
+        }
+        this.rangeThumbsDirty = true;
+    }
+
+    /**
+     * Moves a single range thumb's rectangle after its value changed.
+     * @return True if the thumb moved to another pixel.
+     */
+    boolean updateRangeThumb(int index) {
+        if (!rangeThumbs.updatePosition(index, geometry)) {
+            return false;
+        }
+        setRangeThumbRect(index);
+        return true;
+    }
+
+    void setWaveformPyramid(WaveformPyramid waveformPyramid) {
+        this.waveformPyramid = waveformPyramid;
+        this.waveformLinesDirty = true;
+    }
+
+    /**
+     * Rebuilds the waveform lines on the next update, e.g. after samples were appended.
+     */
+    void invalidateWaveform() {
+        this.waveformLinesDirty = true;
+    }
+
+    void setTrackCacheEnabled(boolean trackCacheEnabled) {
+        if (trackCacheEnabled == isTrackCacheEnabled()) {
+            return;
+        }
+        if (trackCacheEnabled) {
+            trackLayerCache = new TrackLayerCache();
+        } else {
+            trackLayerCache.release();
+            trackLayerCache = null;
+        }
+    }
+
+    /**
+     * Frees the track cache's bitmap, it's recreated on the next draw.
+     */
+    void releaseTrackCache() {
+        if (trackLayerCache != null) {
+            trackLayerCache.release();
+        }
+    }
+
+    //endregion
+
+    //region Drawing
+
+    /**
+     * Updates rectangles and lines needed for drawing. Only the ones whose geometry changed since
+     * the last call are touched, and none of them is reallocated.
+     * @return Mask of the geometry parts that were updated.
+     */
+    int update() {
+        int updated = geometry.update();
+        if ((updated & ProgressBarGeometry.DIRTY_LAYOUT) != 0) {
+            barRect.set(geometry.getLeftEdge(), geometry.getBarTopEdge(),
+                    geometry.getRightEdge(), geometry.getBarBottomEdge());
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_PRIMARY) != 0) {
+            primaryProgressRect.set(geometry.getLeftEdge(), geometry.getBarTopEdge(),
+                    geometry.getPrimaryProgressRightEdge(), geometry.getBarBottomEdge());
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_LAYOUT) != 0) {
+            // Ranges are drawn as lines as thick as the bar
+            secondaryProgressPaint.setStrokeWidth(geometry.getBarHeight());
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_SECONDARY) != 0) {
+            updateSecondaryProgressLines();
+            invalidateTrackLayer();
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_LAYOUT) != 0 || markerLinesDirty) {
+            updateMarkerLines();
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_LAYOUT) != 0 || waveformLinesDirty) {
+            updateWaveformLines();
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_THUMB) != 0) {
+            thumbRect.set(geometry.getThumbLeftEdge(), geometry.getThumbTopEdge(),
+                    geometry.getThumbRightEdge(), geometry.getThumbBottomEdge());
+        }
+        if ((updated & ProgressBarGeometry.DIRTY_LAYOUT) != 0 || rangeThumbsDirty
+                || rangeThumbSize != geometry.getThumbBottomEdge() - geometry.getThumbTopEdge()) {
+            updateRangeThumbRects();
+        }
+        return updated;
+    }
+
+    /**
+     * Draws the bar as of the last {@link #update()}.
+     */
+    void draw(Canvas canvas) {
+        if (trackLayerCache != null) {
+            trackLayerCache.draw(canvas, barRect, barPaint,
+                    secondaryProgressLines, secondaryProgressLineCount, secondaryProgressPaint);
+        } else {
+            canvas.drawRect(barRect, barPaint);
+            if (secondaryProgressLineCount > 0) {
+                canvas.drawLines(secondaryProgressLines, 0, secondaryProgressLineCount,
+                        secondaryProgressPaint);
+            }
+        }
+        canvas.drawRect(primaryProgressRect, primaryProgressPaint);
+        if (waveformLineCount > 0) {
+            canvas.drawLines(waveformLines, 0, waveformLineCount, waveformPaint);
+        }
+        if (markerLineCount > 0) {
+            canvas.drawLines(markerLines, 0, markerLineCount, markerPaint);
+        }
+        if (!thumbVisible) {
+            return;
+        }
+        int rangeThumbCount = rangeThumbs.size();
+        if (rangeThumbCount == 0) {
+            canvas.drawOval(thumbRect, thumbStrokePaint);
+            canvas.drawOval(thumbRect, thumbFillPaint);
+        }
+        for (int i = 0; i < rangeThumbCount; i++) {
+            canvas.drawOval(rangeThumbRects[i], thumbStrokePaint);
+            canvas.drawOval(rangeThumbRects[i], thumbFillPaint);
+        }
+    }
+
+    void invalidateTrackLayer() {
+        if (trackLayerCache != null) {
+            trackLayerCache.invalidate();
+        }
+    }
+
+    //endregion
+
+    //region Private
+
+    /**
+     * @return paint itself, or a copy of it if it's shared with others through the style.
+     */
+    private Paint ownPaint(Paint paint) {
+        return style != null && style.isSharedPaint(paint) ? new Paint(paint) : paint;
+    }
+
+    /**
+     * Converts secondary progress ranges to pixel lines, skipping the ones narrower than a pixel.
+     */
+    private void updateSecondaryProgressLines() {
+        int size = secondaryProgressRanges.size();
+        if (secondaryProgressLines.length < size * 4) {
+            secondaryProgressLines = new float[Math.max(size * 4, secondaryProgressLines.length * 2)];
+        }
+        float y = (geometry.getBarTopEdge() + geometry.getBarBottomEdge()) / 2;
+        int count = 0;
+        // A zero stroke width would draw hairlines
+        for (int i = 0; geometry.getBarHeight() > 0 && i < size; i++) {
+            float startX = geometry.xOf(secondaryProgressRanges.getStart(i));
+            float endX = geometry.xOf(secondaryProgressRanges.getEnd(i));
+            if (endX - startX < 1) {
+                continue;
+            }
+            secondaryProgressLines[count++] = startX;
+            secondaryProgressLines[count++] = y;
+            secondaryProgressLines[count++] = endX;
+            secondaryProgressLines[count++] = y;
+        }
+        secondaryProgressLineCount = count;
+    }
+
+    private void updateRangeThumbRects() {
+        rangeThumbsDirty = false;
+        rangeThumbSize = geometry.getThumbBottomEdge() - geometry.getThumbTopEdge();
+        rangeThumbs.updatePositions(geometry);
+        for (int i = 0; i < rangeThumbs.size(); i++) {
+            setRangeThumbRect(i);
+        }
+    }
+
+    /**
+     * Centers a range thumb's rectangle on its position, with the primary thumb's size.
+     */
+    private void setRangeThumbRect(int index) {
+        float x = rangeThumbs.getPosition(index);
+        float halfSize = rangeThumbSize / 2;
+        rangeThumbRects[index].set(x - halfSize, geometry.getThumbTopEdge(),
+                x + halfSize, geometry.getThumbBottomEdge());
+    }
+
+    /**
+     * Converts marker positions to pixel lines spanning the bar's height, culling the ones
+     * outside the bar and the ones falling on an already used pixel column.
+     */
+    private void updateMarkerLines() {
+        markerLinesDirty = false;
+        int size = markerPositions.length;
+        float left = geometry.getLeftEdge();
+        float right = geometry.getRightEdge();
+        float top = geometry.getBarTopEdge();
+        float bottom = geometry.getBarBottomEdge();
+        int lastColumn = Integer.MIN_VALUE;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float x = geometry.xOf(markerPositions[i]);
+            if (x < left || x > right) {
+                continue;
+            }
+            int column = (int) x;
+            if (column == lastColumn) {
+                continue;
+            }
+            lastColumn = column;
+            markerLines[count++] = x;
+            markerLines[count++] = top;
+            markerLines[count++] = x;
+            markerLines[count++] = bottom;
+        }
+        markerLineCount = count;
+    }
+
+    /**
+     * Resamples the waveform to one min to max line per pixel column of the bar.
+     */
+    private void updateWaveformLines() {
+        waveformLinesDirty = false;
+        int columns = (int) geometry.getContentWidth();
+        if (waveformPyramid == null || columns <= 0 || geometry.getBarHeight() <= 0) {
+            waveformLineCount = 0;
+            return;
+        }
+        if (waveformMins.length < columns) {
+            waveformMins = new float[columns];
+            waveformMaxs = new float[columns];
+            waveformLines = new float[columns * 4];
+        }
+        int count = waveformPyramid.resample(columns, waveformMins, waveformMaxs);
+        float left = geometry.getLeftEdge();
+        float centerY = (geometry.getBarTopEdge() + geometry.getBarBottomEdge()) / 2;
+        float halfHeight = geometry.getBarHeight() / 2;
+        int index = 0;
+        for (int column = 0; column < count; column++) {
+            float x = left + column + 0.5f;
+            float top = centerY - clampSample(waveformMaxs[column]) * halfHeight;
+            float bottom = centerY - clampSample(waveformMins[column]) * halfHeight;
+            // Flat columns would be zero length lines, which don't draw
+            if (bottom - top < 1) {
+                bottom = top + 1;
+            }
+            waveformLines[index++] = x;
+            waveformLines[index++] = top;
+            waveformLines[index++] = x;
+            waveformLines[index++] = bottom;
+        }
+        waveformLineCount = index;
+    }
+
+    private static int modulateAlpha(int color, int alpha) {
+        return (color >>> 24) * alpha / 255;
+    }
+
+    private static float clampSample(float sample) {
+        return Math.max(-1, Math.min(1, sample));
+    }
+
+    //endregion
+
+}
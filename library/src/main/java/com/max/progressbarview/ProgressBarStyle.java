@@ -0,0 +1,420 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Paint;
+import android.support.annotation.ColorInt;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+
+/**
+ * Immutable set of resolved colors and sizes of a {@link ProgressBarView}, together with the
+ * paints configured from them.
+ * <p>
+ * A style is meant to be shared: views using the same style share its paints instead of creating
+ * and configuring their own, and don't look up any resource. A view that changes one of these
+ * values through a setter copies only the affected paint first, so the style is never modified.
+ * <p>
+ * Styles resolved from xml attributes are interned, so rows of a list inflated from the same
+ * layout end up sharing one style and its paints.
+ */
+public final class ProgressBarStyle {
+
+    /**
+     * Max number of distinct interned styles kept, older ones are replaced round robin.
+     */
+    private static final int INTERNED_STYLES = 8;
+
+    private static final ProgressBarStyle[] internedStyles = new ProgressBarStyle[INTERNED_STYLES];
+    private static int nextInternedStyle = 0;
+
+    private static ProgressBarStyle defaultStyle;
+    private static Configuration defaultStyleConfiguration;
+
+    private final int barColor;
+    private final int primaryColor;
+    private final int secondaryColor;
+    private final int thumbFillColor;
+    private final int thumbStrokeColor;
+    private final int markerColor;
+    private final int waveformColor;
+    private final int thumbSize;
+    private final float thumbBorderSize;
+    private final float markerWidth;
+
+    //region Paint
+
+    /**
+     * Created on first use, as styles that turn out equal to an interned one are discarded.
+     */
+    private Paint barPaint;
+    private Paint primaryProgressPaint;
+    private Paint secondaryProgressPaint;
+    private Paint thumbFillPaint;
+    private Paint thumbStrokePaint;
+    private Paint markerPaint;
+    private Paint waveformPaint;
+
+    //endregion
+
+    private ProgressBarStyle(Builder builder) {
+        this.barColor = builder.barColor;
+        this.primaryColor = builder.primaryColor;
+        this.secondaryColor = builder.secondaryColor;
+        this.thumbFillColor = builder.thumbFillColor;
+        this.thumbStrokeColor = builder.thumbStrokeColor;
+        this.markerColor = builder.markerColor;
+        this.waveformColor = builder.waveformColor;
+        this.thumbSize = builder.thumbSize;
+        this.thumbBorderSize = builder.thumbBorderSize;
+        this.markerWidth = builder.markerWidth;
+    }
+
+    //region Factories
+
+    /**
+     * @return The library's default style for context's configuration. It's resolved once and
+     * cached until the configuration changes.
+     */
+    public static synchronized ProgressBarStyle getDefault(Context context) {
+        Resources resources = context.getResources();
+        Configuration configuration = resources.getConfiguration();
+        if (defaultStyle == null || !configuration.equals(defaultStyleConfiguration)) {
+            defaultStyle = new Builder()
+                    .setBarColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_bar_default_color))
+                    .setPrimaryColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_primary_progress_default_color))
+                    .setSecondaryColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_secondary_progress_default_color))
+                    .setThumbFillColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_thumb_fill_default_color))
+                    .setThumbStrokeColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_thumb_stroke_default_color))
+                    .setMarkerColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_marker_default_color))
+                    .setWaveformColor(ContextCompat.getColor(
+                            context, R.color.max_progress_bar_waveform_default_color))
+                    .setThumbSize(resources.getDimensionPixelSize(
+                            R.dimen.max_progress_bar_thumb_size))
+                    .setThumbBorderSize(resources.getDimensionPixelSize(
+                            R.dimen.max_progress_bar_thumb_border_size))
+                    .setMarkerWidth(resources.getDimensionPixelSize(
+                            R.dimen.max_progress_bar_marker_width))
+                    .build();
+            defaultStyleConfiguration = new Configuration(configuration);
+        }
+        return defaultStyle;
+    }
+
+    /**
+     * Resolves a style from xml attributes, using the default style for the ones not set.
+     * @return An interned style, the same instance for equal attributes.
+     */
+    public static ProgressBarStyle fromAttributes(Context context, AttributeSet attributeSet,
+                                                  int defStyleAttr, int defStyleRes) {
+        TypedArray typedArray = context.obtainStyledAttributes(
+                attributeSet, R.styleable.qq_max_progressbar, defStyleAttr, defStyleRes
+        );
+        try {
+            return fromTypedArray(typedArray, getDefault(context));
+        } finally {
+            typedArray.recycle();
+        }
+    }
+
+    /**
+     * Reads the style attributes of an already obtained array, so that the view can read its
+     * other attributes from the same array.
+     */
+    static ProgressBarStyle fromTypedArray(TypedArray typedArray, ProgressBarStyle defaults) {
+        return intern(defaults.buildUpon()
+                .setBarColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_barColor, defaults.barColor))
+                .setPrimaryColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_primaryProgressColor, defaults.primaryColor))
+                .setSecondaryColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_secondaryProgressColor, defaults.secondaryColor))
+                .setThumbFillColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_thumbFillColor, defaults.thumbFillColor))
+                .setThumbStrokeColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_thumbStrokeColor, defaults.thumbStrokeColor))
+                .setMarkerColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_markerColor, defaults.markerColor))
+                .setWaveformColor(typedArray.getColor(
+                        R.styleable.qq_max_progressbar_waveformColor, defaults.waveformColor))
+                .setThumbSize(typedArray.getDimensionPixelSize(
+                        R.styleable.qq_max_progressbar_thumbSize, defaults.thumbSize))
+                .setThumbBorderSize(typedArray.getDimensionPixelSize(
+                        R.styleable.qq_max_progressbar_thumbBorderSize, (int) defaults.thumbBorderSize))
+                .setMarkerWidth(typedArray.getDimensionPixelSize(
+                        R.styleable.qq_max_progressbar_markerWidth, (int) defaults.markerWidth))
+                .build());
+    }
+
+    /**
+     * @return A builder initialized with this style's values.
+     */
+    public Builder buildUpon() {
+        return new Builder()
+                .setBarColor(barColor)
+                .setPrimaryColor(primaryColor)
+                .setSecondaryColor(secondaryColor)
+                .setThumbFillColor(thumbFillColor)
+                .setThumbStrokeColor(thumbStrokeColor)
+                .setMarkerColor(markerColor)
+                .setWaveformColor(waveformColor)
+                .setThumbSize(thumbSize)
+                .setThumbBorderSize(thumbBorderSize)
+                .setMarkerWidth(markerWidth);
+    }
+
+    //endregion
+
+    //region Getters
+
+    public int getBarColor() {
+        return barColor;
+    }
+
+    public int getPrimaryColor() {
+        return primaryColor;
+    }
+
+    public int getSecondaryColor() {
+        return secondaryColor;
+    }
+
+    public int getThumbFillColor() {
+        return thumbFillColor;
+    }
+
+    public int getThumbStrokeColor() {
+        return thumbStrokeColor;
+    }
+
+    public int getMarkerColor() {
+        return markerColor;
+    }
+
+    public int getWaveformColor() {
+        return waveformColor;
+    }
+
+    public int getThumbSize() {
+        return thumbSize;
+    }
+
+    public float getThumbBorderSize() {
+        return thumbBorderSize;
+    }
+
+    public float getMarkerWidth() {
+        return markerWidth;
+    }
+
+    //endregion
+
+    //region Paints
+
+    /**
+     * Creates the shared paints if it's the first time the style is used.
+     */
+    synchronized void preparePaints() {
+        if (barPaint != null) {
+            return;
+        }
+        barPaint = createPaint(Paint.Style.FILL, barColor);
+        primaryProgressPaint = createPaint(Paint.Style.FILL, primaryColor);
+        secondaryProgressPaint = createPaint(Paint.Style.FILL, secondaryColor);
+        thumbFillPaint = createPaint(Paint.Style.FILL, thumbFillColor);
+        thumbStrokePaint = createPaint(Paint.Style.STROKE, thumbStrokeColor);
+        thumbStrokePaint.setStrokeWidth(thumbBorderSize);
+        markerPaint = createPaint(Paint.Style.STROKE, markerColor);
+        markerPaint.setStrokeWidth(markerWidth);
+        waveformPaint = createPaint(Paint.Style.STROKE, waveformColor);
+        // One line per pixel column
+        waveformPaint.setStrokeWidth(1);
+    }
+
+    /**
+     * @return True if paint is one of this style's shared paints, which must not be modified.
+     */
+    boolean isSharedPaint(Paint paint) {
+        return paint == barPaint || paint == primaryProgressPaint
+                || paint == secondaryProgressPaint || paint == thumbFillPaint
+                || paint == thumbStrokePaint || paint == markerPaint || paint == waveformPaint;
+    }
+
+    Paint getBarPaint() {
+        return barPaint;
+    }
+
+    Paint getPrimaryProgressPaint() {
+        return primaryProgressPaint;
+    }
+
+    Paint getSecondaryProgressPaint() {
+        return secondaryProgressPaint;
+    }
+
+    Paint getThumbFillPaint() {
+        return thumbFillPaint;
+    }
+
+    Paint getThumbStrokePaint() {
+        return thumbStrokePaint;
+    }
+
+    Paint getMarkerPaint() {
+        return markerPaint;
+    }
+
+    Paint getWaveformPaint() {
+        return waveformPaint;
+    }
+
+    //endregion
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProgressBarStyle)) {
+            return false;
+        }
+        ProgressBarStyle that = (ProgressBarStyle) o;
+        return barColor == that.barColor
+                && primaryColor == that.primaryColor
+                && secondaryColor == that.secondaryColor
+                && thumbFillColor == that.thumbFillColor
+                && thumbStrokeColor == that.thumbStrokeColor
+                && markerColor == that.markerColor
+                && waveformColor == that.waveformColor
+                && thumbSize == that.thumbSize
+                && Float.compare(thumbBorderSize, that.thumbBorderSize) == 0
+                && Float.compare(markerWidth, that.markerWidth) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = barColor;
+        result = 31 * result + primaryColor;
+        result = 31 * result + secondaryColor;
+        result = 31 * result + thumbFillColor;
+        result = 31 * result + thumbStrokeColor;
+        result = 31 * result + markerColor;
+        result = 31 * result + waveformColor;
+        result = 31 * result + thumbSize;
+        result = 31 * result + Float.floatToIntBits(thumbBorderSize);
+        result = 31 * result + Float.floatToIntBits(markerWidth);
+        return result;
+    }
+
+    //region Private
+
+    private static synchronized ProgressBarStyle intern(ProgressBarStyle style) {
+        if (style.equals(defaultStyle)) {
+            return defaultStyle;
+        }
+        for (ProgressBarStyle interned : internedStyles) {
+            if (style.equals(interned)) {
+                return interned;
+            }
+        }
+        internedStyles[nextInternedStyle] = style;
+        nextInternedStyle = (nextInternedStyle + 1) % INTERNED_STYLES;
+        return style;
+    }
+
+    private static Paint createPaint(Paint.Style style, int color) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(style);
+        paint.setColor(color);
+        return paint;
+    }
+
+    //endregion
+
+    public static final class Builder {
+
+        private int barColor;
+        private int primaryColor;
+        private int secondaryColor;
+        private int thumbFillColor;
+        private int thumbStrokeColor;
+        private int markerColor;
+        private int waveformColor;
+        private int thumbSize;
+        private float thumbBorderSize;
+        private float markerWidth;
+
+        public Builder setBarColor(@ColorInt int barColor) {
+            this.barColor = barColor;
+            return this;
+        }
+
+        public Builder setPrimaryColor(@ColorInt int primaryColor) {
+            this.primaryColor = primaryColor;
+            return this;
+        }
+
+        public Builder setSecondaryColor(@ColorInt int secondaryColor) {
+            this.secondaryColor = secondaryColor;
+            return this;
+        }
+
+        public Builder setThumbFillColor(@ColorInt int thumbFillColor) {
+            this.thumbFillColor = thumbFillColor;
+            return this;
+        }
+
+        public Builder setThumbStrokeColor(@ColorInt int thumbStrokeColor) {
+            this.thumbStrokeColor = thumbStrokeColor;
+            return this;
+        }
+
+        public Builder setMarkerColor(@ColorInt int markerColor) {
+            this.markerColor = markerColor;
+            return this;
+        }
+
+        public Builder setWaveformColor(@ColorInt int waveformColor) {
+            this.waveformColor = waveformColor;
+            return this;
+        }
+
+        /**
+         * @param thumbSize in pixels.
+         */
+        public Builder setThumbSize(int thumbSize) {
+            this.thumbSize = thumbSize;
+            return this;
+        }
+
+        /**
+         * @param thumbBorderSize in pixels.
+         */
+        public Builder setThumbBorderSize(float thumbBorderSize) {
+            this.thumbBorderSize = thumbBorderSize;
+            return this;
+        }
+
+        /**
+         * @param markerWidth in pixels.
+         */
+        public Builder setMarkerWidth(float markerWidth) {
+            this.markerWidth = markerWidth;
+            return this;
+        }
+
+        public ProgressBarStyle build() {
+            return new ProgressBarStyle(this);
+        }
+
+    }
+
+}
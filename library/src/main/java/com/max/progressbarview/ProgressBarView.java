@@ -1,18 +1,28 @@
 package com.max.progressbarview;
 
+import android.animation.TimeInterpolator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.max.progressbarview.R;
 
@@ -49,14 +59,104 @@ public class ProgressBarView extends View {
 
     }
 
+    /**
+     * Receives primary progress as a long, for progress set with the long API such as byte
+     * counts or positions in milliseconds.
+     */
+    public interface OnLongProgressChangedListener {
+
+        /**
+         * Fires whenever {@link OnProgressChangedListener#onProgressChanged} would.
+         * @param progressBarView Instance
+         * @param progress Primary progress value, rounded to the nearest long
+         * @param fromUser True is the event was triggered from user action.
+         */
+        void onProgressChanged(ProgressBarView progressBarView, long progress, boolean fromUser);
+
+    }
+
+    /**
+     * Receives the values of range thumbs, see {@link #setRangeThumbValues(float[])}.
+     */
+    public interface OnRangeThumbChangedListener {
+
+        /**
+         * Fires when a range thumb moves, either dragged by the user or set programmatically.
+         * @param progressBarView Instance
+         * @param index Index of the thumb, thumbs keep their order
+         * @param value New value of the thumb
+         * @param fromUser True is the event was triggered from user action.
+         */
+        void onRangeThumbChanged(ProgressBarView progressBarView, int index, float value,
+                                 boolean fromUser);
+
+    }
+
+    public interface OnScrubPreviewListener {
+
+        /**
+         * Fires while the user drags the thumb, whenever the preview frame of the dragged
+         * position is available.
+         * @param progressBarView Instance
+         * @param position Progress value the frame was loaded for
+         * @param frame The preview frame
+         */
+        void onScrubPreview(ProgressBarView progressBarView, float position, Bitmap frame);
+
+    }
+
+    /**
+     * Listener is notified synchronously whenever progress is committed.
+     */
+    public static final int DELIVERY_IMMEDIATE = ProgressListenerDispatcher.DELIVERY_IMMEDIATE;
+
+    /**
+     * Listener is notified at most once per frame, with the latest progress.
+     */
+    public static final int DELIVERY_PER_FRAME = ProgressListenerDispatcher.DELIVERY_PER_FRAME;
+
+    /**
+     * Listener is notified at most at a given rate, with the latest progress.
+     */
+    public static final int DELIVERY_THROTTLED = ProgressListenerDispatcher.DELIVERY_THROTTLED;
+
+    /**
+     * Listeners are notified of every committed primary progress value.
+     */
+    public static final int NOTIFY_ON_VALUE_CHANGE = 0;
+
+    /**
+     * Listeners are notified only when primary progress moves to another pixel, or when the
+     * change comes from the user.
+     */
+    public static final int NOTIFY_ON_PIXEL_CHANGE = 1;
+
     private OnProgressChangedListener onProgressChangedListener;
 
+    private OnLongProgressChangedListener onLongProgressChangedListener;
+
+    private OnRangeThumbChangedListener onRangeThumbChangedListener;
+
+    private ProgressListenerDispatcher<OnProgressChangedListener> listenerDispatcher;
+
+    private final Runnable throttledDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchThrottledProgressChanged();
+        }
+    };
+
     // endregion
 
     //region Properties
 
     private static final String TAG = ProgressBarView.class.getSimpleName();
 
+    /**
+     * Shared empty array, never written to: markers copy it and waveform buffers grow from it.
+     */
+    private static final float[] EMPTY_FLOATS = new float[0];
+
     private Context context;
 
     private boolean isDragging = false;
@@ -65,13 +165,104 @@ public class ProgressBarView extends View {
 
     private TouchEventHandler touchEventHandler;
 
+    /**
+     * Progress values published from threads other than the UI thread.
+     */
+    private PendingProgress pendingProgress;
+
+    private Handler mainHandler;
+
+    //region Frame
+
+    /**
+     * Staged value changes have to be committed: geometry update, invalidation, notification.
+     */
+    private static final int FRAME_COMMIT = 1;
+
+    /**
+     * Per frame listeners are waiting for the latest progress.
+     */
+    private static final int FRAME_DISPATCH = 1 << 1;
+
+    /**
+     * Displayed progress is animating towards its target.
+     */
+    private static final int FRAME_ANIMATE = 1 << 2;
+
+    /**
+     * The progress source is polled on every frame while the view is shown.
+     */
+    private static final int FRAME_POLL = 1 << 3;
+
+    /**
+     * Primary progress is extrapolated from the playback state on every frame.
+     */
+    private static final int FRAME_EXTRAPOLATE = 1 << 4;
+
+    private FrameTicker frameTicker;
+
+    /**
+     * True while {@link #doFrame(long)} runs, so that per frame listeners are delivered what it
+     * commits at its end instead of on the next frame.
+     */
+    private boolean inFrame = false;
+
+    /**
+     * Mask of the FRAME_* work to be done on the next frame.
+     */
+    private int pendingFrameWork = 0;
+
+    private boolean pendingProgressNotification = false;
+    private boolean pendingNotificationFromUser = false;
+
+    private int progressNotificationRule = NOTIFY_ON_VALUE_CHANGE;
+
+    /**
+     * Pixel of the primary progress when listeners were last notified.
+     */
+    private int lastNotifiedPixel = Integer.MIN_VALUE;
+
+    private final FrameTicker.Callback frameCallback = new FrameTicker.Callback() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            doFrame(frameTimeNanos);
+        }
+    };
+
+    //endregion
+
+    private Editor editor;
+
+    //region Animation
+
+    private static final long DEFAULT_ANIMATION_DURATION_MILLIS = 250;
+
+    /**
+     * When true, programmatic progress changes are animated instead of snapping.
+     */
+    private boolean progressAnimationEnabled = false;
+
+    private ProgressAnimator progressAnimator;
+
+    //endregion
+
+    private final Runnable drainPendingProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainPendingProgress();
+        }
+    };
+
     // region Value
 
-    private float minProgressValue = 0;
-    private float maxProgressValue = 1;
+    /**
+     * Stored as doubles, which hold both float values and long values up to 2^53 exactly.
+     */
+    private double minProgressValue = 0;
+    private double maxProgressValue = 1;
 
-    private float primaryProgressValue = 0;
-    private float secondaryProgressValue = 0;
+    private double primaryProgressValue = 0;
+    private double secondaryProgressValue = 0;
 
     private float thumbSnapValue = 0;
 
@@ -89,39 +280,92 @@ public class ProgressBarView extends View {
      * Keeps track of touchEvent's X axis value upon user interaction (onTouchEvent).
      */
     private float lastX;
+
+    /**
+     * Becomes true once the drag moved the thumb out of the thumbSnapValue range around the
+     * progress it started from, from then on progress follows the finger.
+     */
+    private boolean snapReleased = false;
+
+    /**
+     * Index of the range thumb being dragged, -1 if none.
+     */
+    private int draggedRangeThumb = -1;
+
+    /**
+     * Becomes true once the drag's direction picked which of the thumbs sharing the dragged
+     * value moves.
+     */
+    private boolean draggedRangeThumbPicked = false;
+
+    //endregion
+
+    //region Drawing
+
+    private ProgressBarGeometry geometry;
+
+    private ProgressBarRenderer renderer;
+
     /**
-     * Keeps track of touchEvent's Y axis value upon user interaction (onTouchEvent).
+     * Buffered ranges of the secondary progress, owned by the renderer.
      */
-    private float lastY;
+    private ProgressRanges secondaryProgressRanges;
 
     //endregion
 
-    //region Color
+    //region Scrub preview
 
-    private int barColor = 0;
-    private int primaryColor = 0;
-    private int secondaryColor = 0;
-    private int thumbFillColor = 0;
-    private int thumbStrokeColor = 0;
+    private ScrubPreviewLoader<Bitmap> scrubPreviewLoader;
 
     //endregion
 
-    //region Paint
+    //region Waveform
+
+    /**
+     * Incremented by every setWaveform call, builds of older generations are discarded.
+     */
+    private int waveformGeneration = 0;
 
-    private Paint barPaint;
-    private Paint primaryProgressPaint;
-    private Paint secondaryProgressPaint;
-    private Paint thumbFillPaint;
-    private Paint thumbStrokePaint;
+    /**
+     * True while a pyramid is built in the background, appends are buffered meanwhile.
+     */
+    private boolean waveformBuilding = false;
+    private float[] pendingWaveformSamples = EMPTY_FLOATS;
+    private int pendingWaveformSampleCount = 0;
 
     //endregion
 
-    //region Rectangles
+    /**
+     * Runs scrub preview loads and waveform builds, its thread exits when idle.
+     */
+    private ThreadPoolExecutor backgroundExecutor;
+
+    /**
+     * Null unless metrics are enabled, which keeps their cost on hot paths to a null check.
+     */
+    private ProgressBarMetrics metrics;
+
+    private ProgressSource progressSource;
+
+    private boolean attachedToWindow = false;
+
+    /**
+     * True while the view is detached or hidden: geometry, animations and throttle timers wait
+     * until it is shown again. Views that were never attached aren't suspended, so they can
+     * still be set up and drawn off window.
+     */
+    private boolean suspended = false;
+
+    //region Playback
+
+    private boolean playbackStateSet = false;
 
-    private RectF barRect;
-    private RectF primaryProgressRect;
-    private RectF secondaryProgressRect;
-    private RectF thumbRect;
+    /**
+     * Position at playbackAnchorNanos, in frame time base.
+     */
+    private long playbackPosition;
+    private float playbackSpeed;
+    private long playbackAnchorNanos;
 
     //endregion
 
@@ -134,19 +378,58 @@ public class ProgressBarView extends View {
     }
 
     public float getMinProgressValue() {
-        return minProgressValue;
+        return (float) minProgressValue;
     }
 
     public float getMaxProgressValue() {
-        return maxProgressValue;
+        return (float) maxProgressValue;
     }
 
     public float getPrimaryProgressValue() {
-        return primaryProgressValue;
+        return (float) primaryProgressValue;
     }
 
+    /**
+     * @return Last value set with {@link #setSecondaryProgressValue(float)}.
+     */
     public float getSecondaryProgressValue() {
-        return secondaryProgressValue;
+        return (float) secondaryProgressValue;
+    }
+
+    public long getMinProgress() {
+        return Math.round(minProgressValue);
+    }
+
+    public long getMaxProgress() {
+        return Math.round(maxProgressValue);
+    }
+
+    /**
+     * @return Primary progress rounded to the nearest long, exact if it was set with
+     * {@link #setPrimaryProgress(long)}.
+     */
+    public long getPrimaryProgress() {
+        return Math.round(primaryProgressValue);
+    }
+
+    public long getSecondaryProgress() {
+        return Math.round(secondaryProgressValue);
+    }
+
+    public OnLongProgressChangedListener getOnLongProgressChangedListener() {
+        return onLongProgressChangedListener;
+    }
+
+    public int getSecondaryProgressRangeCount() {
+        return secondaryProgressRanges.size();
+    }
+
+    public float getSecondaryProgressRangeStart(int index) {
+        return secondaryProgressRanges.getStart(index);
+    }
+
+    public float getSecondaryProgressRangeEnd(int index) {
+        return secondaryProgressRanges.getEnd(index);
     }
 
     public float getThumbSnapValue() {
@@ -158,200 +441,923 @@ public class ProgressBarView extends View {
     }
 
     public float getThumbBorderSize() {
-        return this.thumbStrokePaint.getStrokeWidth();
+        return renderer.getThumbBorderSize();
     }
 
-    //endregion
-
-    //region Setters
-
-    public void setOnProgressChangedListener(OnProgressChangedListener onProgressChangedListener) {
-        this.onProgressChangedListener = onProgressChangedListener;
+    public int getMarkerCount() {
+        return renderer.getMarkerCount();
     }
 
-    public void setMinProgressValue(float minProgressValue) {
-        this.minProgressValue = minProgressValue;
-        invalidate();
+    public float getMarker(int index) {
+        return renderer.getMarker(index);
     }
 
-    public void setMaxProgressValue(float maxProgressValue) {
-        this.maxProgressValue = maxProgressValue;
-        invalidate();
+    /**
+     * @return Number of range thumbs, 0 when the view shows the primary progress thumb.
+     */
+    public int getRangeThumbCount() {
+        return renderer.getRangeThumbs().size();
     }
 
-    public void setPrimaryProgressValue(float primaryProgressValue) {
-        this.primaryProgressValue = primaryProgressValue;
-        if (this.onProgressChangedListener != null) {
-            this.onProgressChangedListener.onProgressChanged(this, this.primaryProgressValue, isDragging);
-        }
-        invalidate();
+    public float getRangeThumbValue(int index) {
+        return (float) renderer.getRangeThumbs().getValue(index);
     }
 
-    public void setSecondaryProgressValue(float secondaryProgressValue) {
-        this.secondaryProgressValue = secondaryProgressValue;
-        invalidate();
+    public float getMarkerWidth() {
+        return renderer.getMarkerWidth();
     }
 
-    /**
-     * @param thumbSize in pixels.
-     */
-    public void setThumbSize(int thumbSize) {
-        this.thumbSize = thumbSize;
-        adjustThumbSizeIfNeeded();
-        invalidate();
+    public int getWaveformSampleCount() {
+        WaveformPyramid waveformPyramid = renderer.getWaveformPyramid();
+        return waveformPyramid != null ? waveformPyramid.size() : 0;
     }
 
     /**
-     * @param thumbStrokeWidth
+     * @return The style last applied. Values changed through setters since aren't reflected.
      */
-    public void setThumbBorderSize(float thumbStrokeWidth) {
-        this.thumbStrokePaint.setStrokeWidth(thumbStrokeWidth);
-        invalidate();
+    public ProgressBarStyle getStyle() {
+        return renderer.getStyle();
     }
 
-    public void setThumbSnapValue(float thumbSnapValue) {
-        this.thumbSnapValue = thumbSnapValue;
+    public boolean isTrackCacheEnabled() {
+        return renderer.isTrackCacheEnabled();
     }
 
-    //region Colors
-
-    public void setBarColor(@ColorInt int barColor) {
-        this.barColor = barColor;
-        this.barPaint.setColor(this.barColor);
-        invalidate();
+    public boolean isProgressAnimationEnabled() {
+        return progressAnimationEnabled;
     }
 
-    public void setPrimaryColor(@ColorInt int primaryColor) {
-        this.primaryColor = primaryColor;
-        this.primaryProgressPaint.setColor(this.primaryColor);
-        invalidate();
+    public long getProgressAnimationDuration() {
+        return progressAnimator.getDuration();
     }
 
-    public void setSecondaryColor(@ColorInt int secondaryColor) {
-        this.secondaryColor = secondaryColor;
-        this.secondaryProgressPaint.setColor(this.secondaryColor);
-        invalidate();
+    public TimeInterpolator getProgressInterpolator() {
+        return progressAnimator.getInterpolator();
     }
 
-    public void setThumbFillColor(@ColorInt int thumbFillColor) {
-        this.thumbFillColor = thumbFillColor;
-        this.thumbFillPaint.setColor(this.thumbFillColor);
-        invalidate();
+    public int getProgressNotificationRule() {
+        return progressNotificationRule;
     }
 
-    public void setThumbStrokeColor(@ColorInt int thumbStrokeColor) {
-        this.thumbStrokeColor = thumbStrokeColor;
-        this.thumbStrokePaint.setColor(this.thumbStrokeColor);
-        invalidate();
+    @Nullable
+    public ProgressSource getProgressSource() {
+        return progressSource;
     }
 
     //endregion
 
-    //region Helpers
+    //region Setters
 
-    private void setLastX(float lastX) {
-        this.lastX = (lastX > getRightEdge()) ?
-                getRightEdge() : (lastX < getLeftEdge() ? getLeftEdge() : lastX);
+    public void setOnProgressChangedListener(OnProgressChangedListener onProgressChangedListener) {
+        this.onProgressChangedListener = onProgressChangedListener;
     }
 
-    private void setLastY(float lastY) {
-        this.lastY = lastY;
+    public void setOnLongProgressChangedListener(
+            OnLongProgressChangedListener onLongProgressChangedListener) {
+        this.onLongProgressChangedListener = onLongProgressChangedListener;
     }
 
-    //endregion
-
-    //endregion
-
-    //region Constructor
+    public void setOnRangeThumbChangedListener(
+            OnRangeThumbChangedListener onRangeThumbChangedListener) {
+        this.onRangeThumbChangedListener = onRangeThumbChangedListener;
+    }
 
-    public ProgressBarView(Context context) {
-        super(context);
-        init();
-        initDefaults();
+    /**
+     * Registers a listener that is notified synchronously, in addition to the one set with
+     * {@link #setOnProgressChangedListener(OnProgressChangedListener)}.
+     */
+    public void addOnProgressChangedListener(OnProgressChangedListener listener) {
+        addOnProgressChangedListener(listener, DELIVERY_IMMEDIATE);
     }
 
-    public ProgressBarView(Context context, @Nullable AttributeSet attrs) {
-        super(context, attrs);
-        init();
-        initDefaults();
-        initAttrs(attrs);
+    /**
+     * Registers a listener with a delivery policy. Registering the same listener again only
+     * changes its policy.
+     * @param deliveryPolicy DELIVERY_IMMEDIATE or DELIVERY_PER_FRAME.
+     */
+    public void addOnProgressChangedListener(OnProgressChangedListener listener,
+                                             int deliveryPolicy) {
+        if (deliveryPolicy != DELIVERY_IMMEDIATE && deliveryPolicy != DELIVERY_PER_FRAME) {
+            throw new IllegalArgumentException(
+                    "Use addThrottledOnProgressChangedListener for throttled delivery");
+        }
+        listenerDispatcher.add(listener, deliveryPolicy, 0);
     }
 
-    public ProgressBarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
-        super(context, attrs, defStyleAttr);
-        init();
-        initDefaults();
-        initAttrs(attrs);
+    /**
+     * Registers a listener that is notified with the latest progress at most maxRateHz times per
+     * second. Touch start and end are still delivered immediately.
+     */
+    public void addThrottledOnProgressChangedListener(OnProgressChangedListener listener,
+                                                      float maxRateHz) {
+        if (maxRateHz <= 0) {
+            throw new IllegalArgumentException("maxRateHz must be positive");
+        }
+        listenerDispatcher.add(listener, DELIVERY_THROTTLED, Math.round(1000 / maxRateHz));
     }
 
-    @TargetApi(21)
-    public ProgressBarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
-        super(context, attrs, defStyleAttr, defStyleRes);
-        init();
-        initDefaults();
-        initAttrs(attrs);
+    public void removeOnProgressChangedListener(OnProgressChangedListener listener) {
+        listenerDispatcher.remove(listener);
     }
 
-    //endregion
+    public void setMinProgressValue(float minProgressValue) {
+        stageMinProgressValue(minProgressValue);
+        requestFrame(FRAME_COMMIT);
+    }
 
-    //region Overrides
+    public void setMaxProgressValue(float maxProgressValue) {
+        stageMaxProgressValue(maxProgressValue);
+        requestFrame(FRAME_COMMIT);
+    }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        canvas.drawRect(barRect, barPaint);
-        canvas.drawRect(secondaryProgressRect, secondaryProgressPaint);
-        canvas.drawRect(primaryProgressRect, primaryProgressPaint);
-        canvas.drawOval(thumbRect, thumbStrokePaint);
-        canvas.drawOval(thumbRect, thumbFillPaint);
+    /**
+     * Can be called from any thread. When called off the UI thread the value is published without
+     * locking and applied on the UI thread, where only the newest of the values published in the
+     * meantime is picked up.
+     * <p>
+     * Changes made within the same frame are coalesced into a single geometry update,
+     * invalidation and listener notification on the next frame, use {@link #edit()} to apply
+     * several values at once synchronously.
+     */
+    public void setPrimaryProgressValue(float primaryProgressValue) {
+        postPrimaryProgressValue(primaryProgressValue);
     }
 
-    @Override
-    public void invalidate() {
-        updateDrawingRectangles();
-        super.invalidate();
+    /**
+     * Replaces all secondary progress ranges with the single range [0, secondaryProgressValue].
+     * Can be called from any thread, see {@link #setPrimaryProgressValue(float)}.
+     */
+    public void setSecondaryProgressValue(float secondaryProgressValue) {
+        postSecondaryProgressValue(secondaryProgressValue);
     }
 
-    @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        super.onSizeChanged(w, h, oldw, oldh);
-//        Log.d(TAG, "onSizeChanged");
-        adjustThumbSizeIfNeeded();
-        updateDrawingRectangles();
+    public void setMinProgress(long minProgress) {
+        stageMinProgressValue(minProgress);
+        requestFrame(FRAME_COMMIT);
+    }
+
+    /**
+     * Long counterpart of {@link #setMaxProgressValue(float)}, for values such as byte counts
+     * or durations in milliseconds that floats can't hold exactly past 2^24. Values are exact up
+     * to 2^53.
+     */
+    public void setMaxProgress(long maxProgress) {
+        stageMaxProgressValue(maxProgress);
+        requestFrame(FRAME_COMMIT);
+    }
+
+    /**
+     * Long counterpart of {@link #setPrimaryProgressValue(float)}, can be called from any thread
+     * as well.
+     */
+    public void setPrimaryProgress(long primaryProgress) {
+        postPrimaryProgressValue(primaryProgress);
+    }
+
+    /**
+     * Long counterpart of {@link #setSecondaryProgressValue(float)}.
+     */
+    public void setSecondaryProgress(long secondaryProgress) {
+        postSecondaryProgressValue(secondaryProgress);
+    }
+
+    /**
+     * @param thumbSize in pixels.
+     */
+    public void setThumbSize(int thumbSize) {
+        this.thumbSize = thumbSize;
+        adjustThumbSizeIfNeeded();
+        this.geometry.setThumbSize(this.thumbSize);
+        invalidate();
+    }
+
+    /**
+     * @param thumbStrokeWidth
+     */
+    public void setThumbBorderSize(float thumbStrokeWidth) {
+        this.renderer.setThumbBorderSize(thumbStrokeWidth);
+        invalidate();
+    }
+
+    /**
+     * Adds a buffered range to the secondary progress, merging it with the ranges it overlaps.
+     * Only the part of the bar covered by the range is redrawn. Must be called on the UI thread.
+     */
+    public void addSecondaryProgressRange(float start, float end) {
+        cancelSecondaryProgressAnimation();
+        secondaryProgressRanges.add(start, end);
+        invalidateSecondaryProgressRanges();
+        requestFrame(FRAME_COMMIT);
+    }
+
+    /**
+     * Removes [start, end] from the secondary progress ranges, splitting ranges if needed.
+     * Must be called on the UI thread.
+     */
+    public void removeSecondaryProgressRange(float start, float end) {
+        cancelSecondaryProgressAnimation();
+        secondaryProgressRanges.remove(start, end);
+        invalidateSecondaryProgressRanges();
+        requestFrame(FRAME_COMMIT);
+    }
+
+    /**
+     * Removes all secondary progress ranges. Must be called on the UI thread.
+     */
+    public void clearSecondaryProgressRanges() {
+        cancelSecondaryProgressAnimation();
+        secondaryProgressRanges.clear();
+        invalidateSecondaryProgressRanges();
+        requestFrame(FRAME_COMMIT);
+    }
+
+    /**
+     * Shows markers, such as chapters or ad breaks, at the given progress values. Positions are
+     * copied. Markers outside the range aren't drawn, and markers falling on the same pixel
+     * column are drawn once.
+     * @param positions Marker positions in progress values, in any order.
+     */
+    public void setMarkers(float[] positions) {
+        renderer.setMarkers(positions);
+        invalidate();
+    }
+
+    public void clearMarkers() {
+        setMarkers(EMPTY_FLOATS);
+    }
+
+    /**
+     * Switches to range mode, e.g. for A/B loops or trim ranges: one thumb per value replaces the
+     * primary progress thumb, and drags move the thumb they start on. Thumbs keep their order, a
+     * thumb can't pass its neighbours. Values are copied, sorted and clamped to the progress
+     * range. Primary and secondary progress are still drawn.
+     * @param values Thumb values in any order, empty to go back to the primary progress thumb.
+     */
+    public void setRangeThumbValues(float[] values) {
+        RangeThumbs thumbs = renderer.getRangeThumbs();
+        thumbs.setValues(values);
+        for (int i = 0; i < thumbs.size(); i++) {
+            thumbs.setValue(i, thumbs.getValue(i), minProgressValue, maxProgressValue);
+        }
+        draggedRangeThumb = -1;
+        renderer.invalidateRangeThumbs();
+        invalidate();
+    }
+
+    /**
+     * Moves a range thumb, clamped between its neighbours, invalidating only that thumb.
+     */
+    public void setRangeThumbValue(int index, float value) {
+        moveRangeThumb(index, value, false);
+    }
+
+    /**
+     * @param markerWidth in pixels.
+     */
+    public void setMarkerWidth(float markerWidth) {
+        this.renderer.setMarkerWidth(markerWidth);
+        invalidate();
+    }
+
+    /**
+     * When enabled, the bar and the secondary progress are rendered once into a cached bitmap
+     * which is redrawn only when size, their colors or the secondary progress change. Frames in
+     * which only the primary progress or the thumb move, such as drags, then only draw the bitmap,
+     * the primary progress and the thumb. Costs a bitmap the size of the bar.
+     */
+    public void setTrackCacheEnabled(boolean trackCacheEnabled) {
+        if (renderer.isTrackCacheEnabled() == trackCacheEnabled) {
+            return;
+        }
+        renderer.setTrackCacheEnabled(trackCacheEnabled);
+        invalidate();
+    }
+
+    /**
+     * When enabled, primary and secondary progress set programmatically animate from the displayed
+     * value to the new one. Getters always return the target value. Progress set by the user
+     * through touch is never animated.
+     */
+    public void setProgressAnimationEnabled(boolean progressAnimationEnabled) {
+        this.progressAnimationEnabled = progressAnimationEnabled;
+        if (!progressAnimationEnabled) {
+            finishProgressAnimation();
+        }
+    }
+
+    /**
+     * @param durationMillis Duration of a progress animation, 0 disables animating.
+     */
+    public void setProgressAnimationDuration(long durationMillis) {
+        this.progressAnimator.setDuration(durationMillis);
+    }
+
+    /**
+     * @param interpolator Easing of progress animations, null for linear.
+     */
+    public void setProgressInterpolator(@Nullable TimeInterpolator interpolator) {
+        this.progressAnimator.setInterpolator(interpolator);
+    }
+
+    /**
+     * Sets when programmatic progress changes are delivered to listeners. Redraws are skipped
+     * whenever a change doesn't move primary progress by a pixel, whatever the rule.
+     * @param rule NOTIFY_ON_VALUE_CHANGE, the default, or NOTIFY_ON_PIXEL_CHANGE.
+     */
+    public void setProgressNotificationRule(int rule) {
+        if (rule != NOTIFY_ON_VALUE_CHANGE && rule != NOTIFY_ON_PIXEL_CHANGE) {
+            throw new IllegalArgumentException("Unknown notification rule " + rule);
+        }
+        this.progressNotificationRule = rule;
+    }
+
+    /**
+     * Binds a source that the view polls for its primary, secondary and max progress once per
+     * frame while attached and visible, instead of having values pushed to it. Polled values are
+     * shown without animation, and the primary one is left alone while the user drags. Must be
+     * called on the UI thread.
+     * @param progressSource Source to poll, null to stop polling.
+     */
+    public void setProgressSource(@Nullable ProgressSource progressSource) {
+        this.progressSource = progressSource;
+        updateContinuousFrames();
+    }
+
+    /**
+     * Lets the view advance primary progress by itself during playback, like
+     * {@link android.media.session.PlaybackState}: from position at updateTimeMillis, moving
+     * playbackSpeed units per millisecond. Progress is computed from each frame's time while the
+     * view is attached and shown, so call this again only on discontinuities such as pause, seek
+     * or rate change. The playback state drives primary progress until
+     * {@link #clearPlaybackState()}, a bound {@link ProgressSource} then only provides the
+     * buffered position and duration. Must be called on the UI thread.
+     * @param position          Position at updateTimeMillis.
+     * @param playbackSpeed     1 for normal playback, 0 while paused, negative for rewind.
+     * @param updateTimeMillis  Time position was taken, in {@link SystemClock#elapsedRealtime()}
+     *                          base.
+     */
+    public void setPlaybackState(long position, float playbackSpeed, long updateTimeMillis) {
+        long nowNanos = frameTicker.nowNanos();
+        this.playbackStateSet = true;
+        this.playbackPosition = position;
+        this.playbackSpeed = playbackSpeed;
+        this.playbackAnchorNanos =
+                nowNanos - (SystemClock.elapsedRealtime() - updateTimeMillis) * 1000000L;
+        if (!isDragging) {
+            stagePrimaryProgressValue(extrapolatePlaybackPosition(nowNanos), false, false);
+            requestFrame(FRAME_COMMIT);
+        }
+        updateContinuousFrames();
+    }
+
+    /**
+     * Stops advancing primary progress, which stays where it is.
+     */
+    public void clearPlaybackState() {
+        this.playbackStateSet = false;
+        updateContinuousFrames();
+    }
+
+    public boolean isPlaybackStateSet() {
+        return playbackStateSet;
+    }
+
+    /**
+     * Loads preview frames, e.g. video thumbnails, for the dragged position while the user drags
+     * the thumb. Frames are loaded on a background thread, cached and prefetched ahead of the drag
+     * direction, then delivered to listener on the UI thread. The view doesn't draw them, since a
+     * preview usually sits outside its bounds.
+     * @param provider      Loads the frame of a position, on a background thread. Null disables
+     *                      previews.
+     * @param bucketSize    Positions closer than this share a frame, in progress values.
+     * @param maxCacheBytes Max bytes of frames kept in memory.
+     * @param listener      Receives the frames of the dragged position.
+     */
+    public void setScrubPreviewProvider(@Nullable ScrubPreviewLoader.FrameProvider<Bitmap> provider,
+                                        float bucketSize, int maxCacheBytes,
+                                        @Nullable final OnScrubPreviewListener listener) {
+        if (scrubPreviewLoader != null) {
+            scrubPreviewLoader.clear();
+            scrubPreviewLoader = null;
+        }
+        if (provider == null) {
+            return;
+        }
+        scrubPreviewLoader = new ScrubPreviewLoader<Bitmap>(provider,
+                new ScrubPreviewLoader.FrameSizer<Bitmap>() {
+                    @Override
+                    public int sizeOf(Bitmap frame) {
+                        return frame.getRowBytes() * frame.getHeight();
+                    }
+                },
+                maxCacheBytes, bucketSize, getBackgroundExecutor(),
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        mainHandler.post(command);
+                    }
+                },
+                new ScrubPreviewLoader.Callback<Bitmap>() {
+                    @Override
+                    public void onFrameLoaded(float position, Bitmap frame) {
+                        if (listener != null && isDragging) {
+                            listener.onScrubPreview(ProgressBarView.this, position, frame);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Draws a waveform, or a heatmap, over the bar. Samples are spread evenly across the bar and
+     * are expected in [-1, 1], drawn from the bar's bottom at -1 to its top at 1. They are copied
+     * and summarized on a background thread, after which drawing costs O(pixels) however many
+     * samples there are.
+     * @param samples Samples, null removes the waveform.
+     */
+    public void setWaveform(@Nullable float[] samples) {
+        final int generation = ++waveformGeneration;
+        renderer.setWaveformPyramid(null);
+        pendingWaveformSampleCount = 0;
+        waveformBuilding = samples != null;
+        invalidateWaveform();
+        if (samples == null) {
+            return;
+        }
+        final float[] copy = Arrays.copyOf(samples, samples.length);
+        getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final WaveformPyramid pyramid = WaveformPyramid.build(copy, 0, copy.length);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onWaveformBuilt(generation, pyramid);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Appends samples to the waveform, e.g. for live streams. Only the part of the summary they
+     * affect is recomputed. Does nothing if no waveform was set.
+     */
+    public void appendWaveformSamples(float[] samples, int offset, int count) {
+        if (waveformBuilding) {
+            // Applied once the background build is handed over
+            int size = pendingWaveformSampleCount + count;
+            if (pendingWaveformSamples.length < size) {
+                pendingWaveformSamples = Arrays.copyOf(pendingWaveformSamples,
+                        Math.max(size, pendingWaveformSamples.length * 2));
+            }
+            System.arraycopy(samples, offset, pendingWaveformSamples,
+                    pendingWaveformSampleCount, count);
+            pendingWaveformSampleCount = size;
+            return;
+        }
+        WaveformPyramid waveformPyramid = renderer.getWaveformPyramid();
+        if (waveformPyramid == null) {
+            return;
+        }
+        waveformPyramid.append(samples, offset, count);
+        renderer.invalidateWaveform();
+        invalidateWaveform();
+    }
+
+    /**
+     * Applies a style's colors and sizes, sharing its paints. Values previously changed through
+     * setters are replaced.
+     */
+    public void setStyle(ProgressBarStyle style) {
+        applyStyle(style);
+        invalidate();
+    }
+
+    public void setThumbSnapValue(float thumbSnapValue) {
+        this.thumbSnapValue = thumbSnapValue;
+        this.geometry.setThumbSnapValue(thumbSnapValue);
+    }
+
+    //region Colors
+
+    public void setBarColor(@ColorInt int barColor) {
+        this.renderer.setBarColor(barColor);
+        invalidate();
+    }
+
+    public void setPrimaryColor(@ColorInt int primaryColor) {
+        this.renderer.setPrimaryColor(primaryColor);
+        invalidate();
+    }
+
+    public void setSecondaryColor(@ColorInt int secondaryColor) {
+        this.renderer.setSecondaryColor(secondaryColor);
+        invalidate();
+    }
+
+    public void setThumbFillColor(@ColorInt int thumbFillColor) {
+        this.renderer.setThumbFillColor(thumbFillColor);
+        invalidate();
+    }
+
+    public void setThumbStrokeColor(@ColorInt int thumbStrokeColor) {
+        this.renderer.setThumbStrokeColor(thumbStrokeColor);
+        invalidate();
+    }
+
+    public void setMarkerColor(@ColorInt int markerColor) {
+        this.renderer.setMarkerColor(markerColor);
+        invalidate();
+    }
+
+    public void setWaveformColor(@ColorInt int waveformColor) {
+        this.renderer.setWaveformColor(waveformColor);
+        invalidate();
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private void stageMinProgressValue(double minProgressValue) {
+        this.minProgressValue = minProgressValue;
+        this.geometry.setMinProgressValue(minProgressValue);
+    }
+
+    private void stageMaxProgressValue(double maxProgressValue) {
+        this.maxProgressValue = maxProgressValue;
+        this.geometry.setMaxProgressValue(maxProgressValue);
+    }
+
+    private void stagePrimaryProgressValue(double primaryProgressValue, boolean fromUser) {
+        stagePrimaryProgressValue(primaryProgressValue, fromUser, !fromUser);
+    }
+
+    private void stagePrimaryProgressValue(double primaryProgressValue, boolean fromUser,
+                                           boolean animate) {
+        this.primaryProgressValue = primaryProgressValue;
+        if (progressAnimationEnabled && animate && !suspended) {
+            this.progressAnimator.animateTo(ProgressAnimator.PRIMARY, primaryProgressValue);
+            requestFrame(FRAME_ANIMATE);
+        } else {
+            this.progressAnimator.jumpTo(ProgressAnimator.PRIMARY, primaryProgressValue);
+            this.geometry.setPrimaryProgressValue(primaryProgressValue);
+        }
+        this.pendingProgressNotification = true;
+        this.pendingNotificationFromUser = fromUser;
+    }
+
+    private void stageSecondaryProgressValue(double secondaryProgressValue) {
+        stageSecondaryProgressValue(secondaryProgressValue, true);
+    }
+
+    private void stageSecondaryProgressValue(double secondaryProgressValue, boolean animate) {
+        this.secondaryProgressValue = secondaryProgressValue;
+        if (progressAnimationEnabled && animate && !suspended) {
+            this.progressAnimator.animateTo(ProgressAnimator.SECONDARY, secondaryProgressValue);
+            requestFrame(FRAME_ANIMATE);
+        } else {
+            this.progressAnimator.jumpTo(ProgressAnimator.SECONDARY, secondaryProgressValue);
+            showSecondaryProgressValue(secondaryProgressValue);
+        }
+    }
+
+    /**
+     * Displays value as the single secondary progress range.
+     */
+    private void showSecondaryProgressValue(double value) {
+        // Ranges are floats, which is still far below a pixel for secondary progress
+        secondaryProgressRanges.set(0, (float) value);
+        invalidateSecondaryProgressRanges();
+    }
+
+    /**
+     * Hands the span touched by range changes over to the geometry.
+     */
+    private void invalidateSecondaryProgressRanges() {
+        if (secondaryProgressRanges.hasChanged()) {
+            geometry.invalidateSecondaryProgress(
+                    secondaryProgressRanges.getChangedStart(), secondaryProgressRanges.getChangedEnd());
+            secondaryProgressRanges.clearChangedSpan();
+        }
+    }
+
+    private void cancelSecondaryProgressAnimation() {
+        if (progressAnimator.isRunning(ProgressAnimator.SECONDARY)) {
+            progressAnimator.jumpTo(ProgressAnimator.SECONDARY, secondaryProgressValue);
+            showSecondaryProgressValue(secondaryProgressValue);
+        }
+    }
+
+    private void setLastX(float lastX) {
+        this.lastX = geometry.clampX(lastX);
+        this.geometry.setDragging(isDragging, this.lastX);
+    }
+
+    //endregion
+
+    //endregion
+
+    //region Constructor
+
+    public ProgressBarView(Context context) {
+        this(context, ProgressBarStyle.getDefault(context));
+    }
+
+    /**
+     * Creates a view sharing style's paints, without any resource lookup. Preferred for views
+     * created in bulk, such as list rows.
+     */
+    public ProgressBarView(Context context, ProgressBarStyle style) {
+        super(context);
+        init();
+        applyStyle(style);
+    }
+
+    public ProgressBarView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init();
+        initAttrs(attrs, 0, 0);
+    }
+
+    public ProgressBarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+        initAttrs(attrs, defStyleAttr, 0);
+    }
+
+    @TargetApi(21)
+    public ProgressBarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        init();
+        initAttrs(attrs, defStyleAttr, defStyleRes);
+    }
+
+    //endregion
+
+    //region Overrides
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        super.onDraw(canvas);
+        // Picks up changes still waiting for their frame, no-op otherwise
+        updateDrawingRectangles();
+        renderer.draw(canvas);
+        if (metrics != null) {
+            metrics.drawCount++;
+            metrics.drawTimeNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        recordInvalidation(false);
+        // View's constructor may invalidate before init() has run
+        if (geometry != null && !suspended) {
+            updateDrawingRectangles();
+            geometry.clearDirtyRegion();
+        }
+        super.invalidate();
+    }
+
+    /**
+     * Recomputes the geometry and invalidates only the area covered by the old and new bounds of
+     * whatever moved, falling back to a full invalidation when the layout changed.
+     */
+    private void invalidateGeometry() {
+        if (suspended) {
+            // Caught up with a single update when shown again
+            recordInvalidation(true);
+            return;
+        }
+        updateDrawingRectangles();
+        if (geometry.needsFullInvalidation()) {
+            invalidate();
+            return;
+        }
+        recordInvalidation(geometry.isDirtyRegionEmpty());
+        if (!geometry.isDirtyRegionEmpty()) {
+            // Thumb's stroke is drawn centered on thumbRect, plus a pixel for anti aliasing
+            float outset = renderer.getThumbBorderSize() / 2 + 1;
+            super.invalidate(
+                    (int) Math.floor(geometry.getDirtyLeft() - outset),
+                    (int) Math.floor(geometry.getDirtyTop() - outset),
+                    (int) Math.ceil(geometry.getDirtyRight() + outset),
+                    (int) Math.ceil(geometry.getDirtyBottom() + outset));
+        }
+        geometry.clearDirtyRegion();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attachedToWindow = true;
+        updateSuspension();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attachedToWindow = false;
+        updateSuspension();
+        renderer.releaseTrackCache();
+        if (scrubPreviewLoader != null) {
+            scrubPreviewLoader.clear();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateSuspension();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateSuspension();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+//        Log.d(TAG, "onSizeChanged");
+        adjustThumbSizeIfNeeded();
+        this.geometry.setThumbSize(this.thumbSize);
+        updateLayoutGeometry();
+        if (!suspended) {
+            updateDrawingRectangles();
+        }
+    }
+
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
+        if (this.geometry != null) {
+            updateLayoutGeometry();
+            invalidate();
+        }
+    }
+
+    @TargetApi(17)
+    @Override
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        super.setPaddingRelative(start, top, end, bottom);
+        if (this.geometry != null) {
+            updateLayoutGeometry();
+            invalidate();
+        }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        setLastX(event.getX());
-        setLastY(event.getY());
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_DOWN: {
-                onStartTrackingTouch();
-                invalidate();
-                break;
+        if (metrics != null) {
+            metrics.touchEventCount++;
+        }
+        return touchEventHandler.onTouchEvent(event);
+    }
+
+    //endregion
+
+    //region Public
+
+    /**
+     * Starts a transaction that sets several values at once. Nothing is applied until
+     * {@link Editor#apply()} is called, which does a single geometry update, a single
+     * invalidation and at most one listener notification. The editor is reused between calls.
+     */
+    public Editor edit() {
+        if (editor == null) {
+            editor = new Editor();
+        }
+        editor.clear();
+        return editor;
+    }
+
+    /**
+     * Starts or stops counting draws, invalidations, listener deliveries, touch events and
+     * geometry updates. Disabled by default, enabling starts from zero.
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        if (metricsEnabled == isMetricsEnabled()) {
+            return;
+        }
+        this.metrics = metricsEnabled ? new ProgressBarMetrics() : null;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metrics != null;
+    }
+
+    /**
+     * Copies current metrics into snapshot, all zero if metrics are disabled.
+     * @return snapshot
+     */
+    public ProgressBarMetrics getMetrics(ProgressBarMetrics snapshot) {
+        if (metrics != null) {
+            snapshot.set(metrics);
+        } else {
+            snapshot.reset();
+        }
+        return snapshot;
+    }
+
+    public void resetMetrics() {
+        if (metrics != null) {
+            metrics.reset();
+        }
+    }
+
+    public final class Editor {
+
+        private static final int MIN = 1;
+        private static final int MAX = 1 << 1;
+        private static final int PRIMARY = 1 << 2;
+        private static final int SECONDARY = 1 << 3;
+
+        private int changes;
+        private double minProgressValue;
+        private double maxProgressValue;
+        private double primaryProgressValue;
+        private double secondaryProgressValue;
+
+        private Editor() {
+        }
+
+        public Editor setMinProgressValue(float minProgressValue) {
+            this.minProgressValue = minProgressValue;
+            this.changes |= MIN;
+            return this;
+        }
+
+        public Editor setMaxProgressValue(float maxProgressValue) {
+            this.maxProgressValue = maxProgressValue;
+            this.changes |= MAX;
+            return this;
+        }
+
+        public Editor setPrimaryProgressValue(float primaryProgressValue) {
+            this.primaryProgressValue = primaryProgressValue;
+            this.changes |= PRIMARY;
+            return this;
+        }
+
+        public Editor setSecondaryProgressValue(float secondaryProgressValue) {
+            this.secondaryProgressValue = secondaryProgressValue;
+            this.changes |= SECONDARY;
+            return this;
+        }
+
+        public Editor setMinProgress(long minProgress) {
+            this.minProgressValue = minProgress;
+            this.changes |= MIN;
+            return this;
+        }
+
+        public Editor setMaxProgress(long maxProgress) {
+            this.maxProgressValue = maxProgress;
+            this.changes |= MAX;
+            return this;
+        }
+
+        public Editor setPrimaryProgress(long primaryProgress) {
+            this.primaryProgressValue = primaryProgress;
+            this.changes |= PRIMARY;
+            return this;
+        }
+
+        public Editor setSecondaryProgress(long secondaryProgress) {
+            this.secondaryProgressValue = secondaryProgress;
+            this.changes |= SECONDARY;
+            return this;
+        }
+
+        /**
+         * Applies all values set on this editor. Must be called on the UI thread.
+         */
+        public void apply() {
+            if ((changes & MIN) != 0) {
+                stageMinProgressValue(minProgressValue);
             }
-            case MotionEvent.ACTION_MOVE: {
-                invalidate();
-                break;
+            if ((changes & MAX) != 0) {
+                stageMaxProgressValue(maxProgressValue);
             }
-            case MotionEvent.ACTION_UP: {
-                float primaryProgressValue =
-                        (lastX - getLeftEdge()) / getContentWidth() * maxProgressValue;
-                setPrimaryProgressValue(primaryProgressValue);
-                onEndTrackingTouch();
-                break;
+            if ((changes & PRIMARY) != 0) {
+                stagePrimaryProgressValue(primaryProgressValue, isDragging);
             }
-            case MotionEvent.ACTION_CANCEL: {
-                onEndTrackingTouch();
-                break;
+            if ((changes & SECONDARY) != 0) {
+                stageSecondaryProgressValue(secondaryProgressValue);
             }
+            clear();
+            commitPendingChanges();
         }
-        return true;
-    }
 
-    //endregion
+        private void clear() {
+            changes = 0;
+        }
 
-    //region Public
+    }
 
     //endregion
 
@@ -364,138 +1370,200 @@ public class ProgressBarView extends View {
      */
     private void init() {
         this.context = getContext();
-        this.barPaint = createPaint(Paint.Style.FILL);
-        this.primaryProgressPaint = createPaint(Paint.Style.FILL);
-        this.secondaryProgressPaint = createPaint(Paint.Style.FILL);
-        this.thumbFillPaint = createPaint(Paint.Style.FILL);
-        this.thumbStrokePaint = createPaint(Paint.Style.STROKE);
         this.touchEventHandler = new TouchEventHandler(this);
+        this.pendingProgress = new PendingProgress();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.frameTicker = FrameTicker.create(frameCallback);
+        this.listenerDispatcher = new ProgressListenerDispatcher<>(
+                new ProgressListenerDispatcher.Invoker<OnProgressChangedListener>() {
+                    @Override
+                    public void onProgressChanged(OnProgressChangedListener listener,
+                                                  double progress, boolean fromUser) {
+                        listener.onProgressChanged(ProgressBarView.this, (float) progress,
+                                fromUser);
+                    }
+
+                    @Override
+                    public void onTouchStart(OnProgressChangedListener listener) {
+                        listener.onTouchStart(ProgressBarView.this);
+                    }
+
+                    @Override
+                    public void onTouchEnd(OnProgressChangedListener listener) {
+                        listener.onTouchEnd(ProgressBarView.this);
+                    }
+                });
+        this.progressAnimator = new ProgressAnimator(
+                DEFAULT_ANIMATION_DURATION_MILLIS, new DecelerateInterpolator());
+        this.geometry = new ProgressBarGeometry();
+        this.geometry.setBarHeightCoefficient(barHeightCoefficient);
+        this.renderer = new ProgressBarRenderer(geometry);
+        this.secondaryProgressRanges = renderer.getSecondaryProgressRanges();
     }
 
     /**
-     * Convenience function that instantiates Paint objects.
-     * @param style     Style to be used for Paint
-     * @return          Paint object
-     */
-    private Paint createPaint(Paint.Style style) {
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint.setStyle(style);
-        return paint;
-    }
-
-    /**
-     * Initialize defaults values here.
+     * Takes colors and sizes from style and shares its paints, without any resource lookup.
      */
-    private void initDefaults() {
-
-        setBarColor(ContextCompat.getColor(
-                context,
-                R.color.max_progress_bar_bar_default_color
-        ));
-        setPrimaryColor(ContextCompat.getColor(
-                context,
-                R.color.max_progress_bar_primary_progress_default_color
-        ));
-        setSecondaryColor(ContextCompat.getColor(
-                context,
-                R.color.max_progress_bar_secondary_progress_default_color
-        ));
-        setThumbSize(
-                getResources().getDimensionPixelSize(R.dimen.max_progress_bar_thumb_size)
-        );
-        setThumbBorderSize(
-                getResources().getDimensionPixelSize(R.dimen.max_progress_bar_thumb_border_size)
-        );
-        setThumbFillColor(ContextCompat.getColor(
-                context,
-                R.color.max_progress_bar_thumb_fill_default_color
-        ));
-        setThumbStrokeColor(ContextCompat.getColor(
-                context,
-                R.color.max_progress_bar_thumb_stroke_default_color
-        ));
+    private void applyStyle(ProgressBarStyle style) {
+        this.renderer.applyStyle(style);
+        this.thumbSize = style.getThumbSize();
+        adjustThumbSizeIfNeeded();
+        this.geometry.setThumbSize(this.thumbSize);
     }
 
     /**
      * Initialize any attributes defined in xml.
+     * <p>
+     * Every attribute is resolved from a single TypedArray and applied in one pass straight to
+     * the fields, without going through the setters: nothing is invalidated, no frame is
+     * requested and no listener is notified, and the geometry is only computed on first layout.
      */
-    private void initAttrs(@Nullable AttributeSet attributeSet) {
+    private void initAttrs(@Nullable AttributeSet attributeSet, int defStyleAttr, int defStyleRes) {
+        ProgressBarStyle defaultStyle = ProgressBarStyle.getDefault(context);
         if (attributeSet == null) {
+            applyStyle(defaultStyle);
             return;
         }
         TypedArray typedArray = context.obtainStyledAttributes(
-                attributeSet, R.styleable.qq_max_progressbar
+                attributeSet, R.styleable.qq_max_progressbar, defStyleAttr, defStyleRes
         );
 
-        setBarColor(typedArray.getColor(
-                R.styleable.qq_max_progressbar_barColor,
-                ContextCompat.getColor(
-                        context,
-                        R.color.max_progress_bar_bar_default_color
-                )
-            )
-        );
-        setPrimaryColor(typedArray.getColor(
-                R.styleable.qq_max_progressbar_primaryProgressColor,
-                ContextCompat.getColor(
-                        context,
-                        R.color.max_progress_bar_primary_progress_default_color
-                )));
-        setSecondaryColor(typedArray.getColor(
-                R.styleable.qq_max_progressbar_secondaryProgressColor,
-                ContextCompat.getColor(
-                        context,
-                        R.color.max_progress_bar_secondary_progress_default_color
-                )));
-        setThumbSize(typedArray.getDimensionPixelSize(
-                R.styleable.qq_max_progressbar_thumbSize,
-                getResources().getDimensionPixelSize(
-                        R.dimen.max_progress_bar_thumb_size
-                )));
-        setThumbBorderSize(typedArray.getDimensionPixelSize(
-                R.styleable.qq_max_progressbar_thumbBorderSize,
-                getResources().getDimensionPixelSize(
-                        R.dimen.max_progress_bar_thumb_border_size
-                )));
-        setThumbFillColor(typedArray.getColor(
-                R.styleable.qq_max_progressbar_thumbFillColor,
-                ContextCompat.getColor(
-                        context,
-                        R.color.max_progress_bar_thumb_fill_default_color
-                )));
-        setThumbStrokeColor(typedArray.getColor(
-                R.styleable.qq_max_progressbar_thumbStrokeColor,
-                ContextCompat.getColor(
-                        context,
-                        R.color.max_progress_bar_thumb_stroke_default_color
-                )));
-
-        setMinProgressValue(typedArray.getFloat(
-                R.styleable.qq_max_progressbar_minProgressValue, 0f));
-
-        setMaxProgressValue(typedArray.getFloat(
-                R.styleable.qq_max_progressbar_maxProgressValue, 1f));
-
-        setThumbSnapValue(typedArray.getFloat(
-                R.styleable.qq_max_progressbar_thumbSnapValue, 0f));
-
-        setPrimaryProgressValue(typedArray.getFloat(
-                R.styleable.qq_max_progressbar_primaryProgressValue, 0f));
-
-        setSecondaryProgressValue(typedArray.getFloat(
-                R.styleable.qq_max_progressbar_secondaryProgressValue, 0f));
+        // Equal attributes resolve to the same style, whose paints are then shared
+        applyStyle(ProgressBarStyle.fromTypedArray(typedArray, defaultStyle));
+
+        this.minProgressValue = typedArray.getFloat(
+                R.styleable.qq_max_progressbar_minProgressValue, 0f);
+        this.geometry.setMinProgressValue(minProgressValue);
+
+        this.maxProgressValue = typedArray.getFloat(
+                R.styleable.qq_max_progressbar_maxProgressValue, 1f);
+        this.geometry.setMaxProgressValue(maxProgressValue);
+
+        this.thumbSnapValue = typedArray.getFloat(
+                R.styleable.qq_max_progressbar_thumbSnapValue, 0f);
+        this.geometry.setThumbSnapValue(thumbSnapValue);
+
+        this.primaryProgressValue = typedArray.getFloat(
+                R.styleable.qq_max_progressbar_primaryProgressValue, 0f);
+        this.progressAnimator.jumpTo(ProgressAnimator.PRIMARY, primaryProgressValue);
+        this.geometry.setPrimaryProgressValue(primaryProgressValue);
+
+        this.secondaryProgressValue = typedArray.getFloat(
+                R.styleable.qq_max_progressbar_secondaryProgressValue, 0f);
+        this.progressAnimator.jumpTo(ProgressAnimator.SECONDARY, secondaryProgressValue);
+        showSecondaryProgressValue(secondaryProgressValue);
+
+        this.progressAnimator.setDuration(typedArray.getInt(
+                R.styleable.qq_max_progressbar_progressAnimationDuration,
+                (int) DEFAULT_ANIMATION_DURATION_MILLIS));
+
+        this.progressAnimationEnabled = typedArray.getBoolean(
+                R.styleable.qq_max_progressbar_animateProgress, false);
+
+        this.renderer.setTrackCacheEnabled(typedArray.getBoolean(
+                R.styleable.qq_max_progressbar_trackCacheEnabled, false));
 
         typedArray.recycle();
     }
 
     /**
-     * Updates rectangles needed for drawing.
+     * Updates rectangles and lines needed for drawing, only the ones whose geometry changed.
      */
     private void updateDrawingRectangles() {
-        barRect = new RectF(getLeftEdge(), getBarTopEdge(), getRightEdge(), getBarBottomEdge());
-        primaryProgressRect = new RectF(getLeftEdge(), getBarTopEdge(), getPrimaryProgressRightEdge(), getBarBottomEdge());
-        secondaryProgressRect = new RectF(getLeftEdge(), getBarTopEdge(), getSecondaryProgressRightEdge(), getBarBottomEdge());
-        thumbRect = new RectF(getThumbLeftEdge(), getThumbTopEdge(), getThumbRightEdge(), getThumbBottomEdge());
+        if (renderer.update() != 0 && metrics != null) {
+            metrics.geometryUpdateCount++;
+        }
+    }
+
+    private void onWaveformBuilt(int generation, WaveformPyramid pyramid) {
+        if (generation != waveformGeneration) {
+            return;
+        }
+        waveformBuilding = false;
+        renderer.setWaveformPyramid(pyramid);
+        if (pendingWaveformSampleCount > 0) {
+            pyramid.append(pendingWaveformSamples, 0, pendingWaveformSampleCount);
+            pendingWaveformSampleCount = 0;
+        }
+        invalidateWaveform();
+    }
+
+    /**
+     * Moves a range thumb within its neighbours and invalidates only the area it moved across.
+     */
+    private void moveRangeThumb(int index, double value, boolean fromUser) {
+        RangeThumbs thumbs = renderer.getRangeThumbs();
+        double previousValue = thumbs.getValue(index);
+        double movedValue = thumbs.setValue(index, value, minProgressValue, maxProgressValue);
+        if (movedValue == previousValue) {
+            return;
+        }
+        if (suspended) {
+            renderer.invalidateRangeThumbs();
+        } else {
+            invalidateRangeThumb(index);
+        }
+        if (onRangeThumbChangedListener != null) {
+            onRangeThumbChangedListener.onRangeThumbChanged(
+                    this, index, (float) movedValue, fromUser);
+        }
+    }
+
+    private void invalidateRangeThumb(int index) {
+        // Pending changes first, so the rectangle's old bounds are up to date
+        updateDrawingRectangles();
+        RectF rect = renderer.getRangeThumbRect(index);
+        float oldLeft = rect.left;
+        float oldRight = rect.right;
+        if (!renderer.updateRangeThumb(index)) {
+            recordInvalidation(true);
+            return;
+        }
+        recordInvalidation(false);
+        float outset = renderer.getThumbBorderSize() / 2 + 1;
+        super.invalidate(
+                (int) Math.floor(Math.min(oldLeft, rect.left) - outset),
+                (int) Math.floor(rect.top - outset),
+                (int) Math.ceil(Math.max(oldRight, rect.right) + outset),
+                (int) Math.ceil(rect.bottom + outset));
+    }
+
+    /**
+     * Redraws the bar only, which is where the waveform is drawn.
+     */
+    private void invalidateWaveform() {
+        recordInvalidation(false);
+        RectF barRect = renderer.getBarRect();
+        super.invalidate((int) Math.floor(barRect.left), (int) Math.floor(barRect.top),
+                (int) Math.ceil(barRect.right), (int) Math.ceil(barRect.bottom));
+    }
+
+    private ThreadPoolExecutor getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            // Single thread that exits when idle, so an abandoned view doesn't leak it
+            backgroundExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            backgroundExecutor.allowCoreThreadTimeOut(true);
+        }
+        return backgroundExecutor;
+    }
+
+    /**
+     * Replaces the frame clock, so that tests can drive frames by hand.
+     */
+    void setFrameTickerFactory(FrameTicker.Factory factory) {
+        frameTicker.cancel();
+        frameTicker = factory.create(frameCallback);
+        if (pendingFrameWork != 0 && (!suspended || needsFrameWhileSuspended())) {
+            frameTicker.schedule();
+        }
+    }
+
+    /**
+     * Feeds view's size and padding to the geometry.
+     */
+    private void updateLayoutGeometry() {
+        geometry.setLayout(getWidth(), getHeight(), getPaddingLeft(), getPaddingRight());
     }
 
     //endregion
@@ -522,122 +1590,515 @@ public class ProgressBarView extends View {
         }
     }
 
+    //endregion
+
+    //region Helper
+
+    /**
+     * Schedules work for the next frame. Requests made before that frame are merged.
+     * @param work Mask of FRAME_* flags.
+     */
+    private void requestFrame(int work) {
+        if (metrics != null && (work & (FRAME_COMMIT | FRAME_ANIMATE)) != 0) {
+            recordInvalidation(frameTicker.isScheduled());
+        }
+        pendingFrameWork |= work;
+        if (!suspended || needsFrameWhileSuspended()) {
+            frameTicker.schedule();
+        }
+    }
+
+    /**
+     * While suspended, frames only run to notify listeners.
+     */
+    private boolean needsFrameWhileSuspended() {
+        return (pendingFrameWork & FRAME_DISPATCH) != 0
+                || (pendingFrameWork & FRAME_COMMIT) != 0 && pendingProgressNotification
+                && hasProgressListeners();
+    }
+
+    /**
+     * @param coalesced True if the request costs no redraw or frame of its own.
+     */
+    private void recordInvalidation(boolean coalesced) {
+        if (metrics != null) {
+            metrics.invalidationRequestCount++;
+            if (coalesced) {
+                metrics.coalescedInvalidationCount++;
+            }
+        }
+    }
+
+    /**
+     * Adds a listener delivery pass started at startNanos to the metrics.
+     */
+    private void recordDispatch(long startNanos) {
+        if (metrics != null) {
+            metrics.dispatchCount++;
+            metrics.dispatchTimeNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        int work = pendingFrameWork;
+        pendingFrameWork = 0;
+        inFrame = true;
+        if ((work & FRAME_POLL) != 0 && pollProgressSource()) {
+            work |= FRAME_COMMIT;
+        }
+        if ((work & FRAME_EXTRAPOLATE) != 0 && extrapolatePlayback(frameTimeNanos)) {
+            work |= FRAME_COMMIT;
+        }
+        if ((work & FRAME_COMMIT) != 0) {
+            commitPendingChanges();
+        }
+        if ((work & FRAME_ANIMATE) != 0) {
+            stepProgressAnimation(frameTimeNanos);
+        }
+        inFrame = false;
+        // Progress committed by this frame
+        work |= pendingFrameWork & FRAME_DISPATCH;
+        pendingFrameWork &= ~FRAME_DISPATCH;
+        if ((work & FRAME_DISPATCH) != 0) {
+            long startNanos = metrics != null ? System.nanoTime() : 0;
+            listenerDispatcher.dispatchFrame(SystemClock.uptimeMillis());
+            recordDispatch(startNanos);
+        }
+    }
+
+    /**
+     * Polls the progress source and extrapolates playback on every frame while the view is
+     * attached and shown, and stops otherwise.
+     */
+    private void updateContinuousFrames() {
+        // Visibility callbacks may come from View's constructor, before init() has run
+        if (frameTicker == null) {
+            return;
+        }
+        boolean shown = attachedToWindow && !suspended;
+        if (shown && progressSource != null) {
+            requestFrame(FRAME_POLL);
+        } else {
+            cancelFrameWork(FRAME_POLL);
+        }
+        if (shown && playbackStateSet && playbackSpeed != 0) {
+            requestFrame(FRAME_EXTRAPOLATE);
+        } else {
+            cancelFrameWork(FRAME_EXTRAPOLATE);
+        }
+    }
+
     /**
-     * @return View's center x.
+     * Suspends per frame work when the view gets detached or hidden, and catches up with a single
+     * geometry update when it is shown again.
      */
-    private float getCenterX() {
-        return getWidth() / 2;
+    private void updateSuspension() {
+        // Visibility callbacks may come from View's constructor, before init() has run
+        if (frameTicker == null) {
+            return;
+        }
+        boolean suspended = !attachedToWindow || !isShown() || getWindowVisibility() != VISIBLE;
+        if (suspended == this.suspended) {
+            updateContinuousFrames();
+            return;
+        }
+        this.suspended = suspended;
+        if (suspended) {
+            if (progressAnimator.isRunning()) {
+                finishProgressAnimation();
+            }
+            mainHandler.removeCallbacks(throttledDispatchRunnable);
+            if (!needsFrameWhileSuspended()) {
+                frameTicker.cancel();
+            }
+        } else {
+            invalidate();
+            if (listenerDispatcher.size() > 0) {
+                // Delivers what throttled listeners missed and re-arms the timer
+                dispatchThrottledProgressChanged();
+            }
+            if (pendingFrameWork != 0) {
+                frameTicker.schedule();
+            }
+        }
+        updateContinuousFrames();
     }
 
     /**
-     * @return View's center y.
+     * Drops work from the next frame, cancelling the frame if nothing is left.
      */
-    private float getCenterY() {
-        return getHeight() / 2;
+    private void cancelFrameWork(int work) {
+        pendingFrameWork &= ~work;
+        if (pendingFrameWork == 0) {
+            frameTicker.cancel();
+        }
     }
 
     /**
-     * @return Height of the bar.
+     * Stages the latest values of the progress source and asks for the next poll.
+     * @return True if some value changed and has to be committed.
      */
-    private float getBarHeight() {
-        return (int) (barHeightCoefficient * getHeight());
+    private boolean pollProgressSource() {
+        ProgressSource source = progressSource;
+        if (source == null) {
+            return false;
+        }
+        requestFrame(FRAME_POLL);
+        boolean changed = false;
+        long duration = source.getDuration();
+        if (duration > 0 && duration != maxProgressValue) {
+            stageMaxProgressValue(duration);
+            changed = true;
+        }
+        long position = source.getCurrentPosition();
+        // Polled values are continuous already, animating them would only lag behind
+        if (!isDragging && !playbackStateSet && position != primaryProgressValue) {
+            stagePrimaryProgressValue(position, false, false);
+            changed = true;
+        }
+        long bufferedPosition = source.getBufferedPosition();
+        if (bufferedPosition != secondaryProgressValue) {
+            stageSecondaryProgressValue(bufferedPosition, false);
+            changed = true;
+        }
+        return changed;
     }
 
     /**
-     * @return The top edge of the bar's drawing rectangle.
+     * Stages the playback position at frameTimeNanos and asks for the next frame.
+     * @return True if primary progress changed and has to be committed.
      */
-    private float getBarTopEdge() {
-        return getCenterY() - getBarHeight() / 2;
+    private boolean extrapolatePlayback(long frameTimeNanos) {
+        if (!playbackStateSet || playbackSpeed == 0) {
+            return false;
+        }
+        requestFrame(FRAME_EXTRAPOLATE);
+        if (isDragging) {
+            return false;
+        }
+        double position = extrapolatePlaybackPosition(frameTimeNanos);
+        if (position == primaryProgressValue) {
+            return false;
+        }
+        stagePrimaryProgressValue(position, false, false);
+        return true;
     }
 
     /**
-     * @return The top edge of the bar's drawing rectangle.
+     * @return Playback position at timeNanos, within [minProgressValue, maxProgressValue].
      */
-    private float getBarBottomEdge() {
-        return getCenterY() + getBarHeight() / 2;
+    private double extrapolatePlaybackPosition(long timeNanos) {
+        double position = playbackPosition
+                + (double) playbackSpeed * (timeNanos - playbackAnchorNanos) / 1000000L;
+        return Math.max(minProgressValue, Math.min(maxProgressValue, position));
     }
 
     /**
-     * @return The left/starting edge of the drawing rectangle.
+     * Moves the displayed progress to its value at frameTimeNanos and asks for another frame
+     * only while the animation hasn't settled.
      */
-    private float getLeftEdge() {
-        return getPaddingLeft();
+    private void stepProgressAnimation(long frameTimeNanos) {
+        boolean secondaryRunning = progressAnimator.isRunning(ProgressAnimator.SECONDARY);
+        boolean running = progressAnimator.step(frameTimeNanos);
+        geometry.setPrimaryProgressValue(progressAnimator.getValue(ProgressAnimator.PRIMARY));
+        if (secondaryRunning) {
+            showSecondaryProgressValue(progressAnimator.getValue(ProgressAnimator.SECONDARY));
+        }
+        invalidateGeometry();
+        if (running) {
+            requestFrame(FRAME_ANIMATE);
+        }
     }
 
     /**
-     * @return The right/ending edge of the drawing rectangle.
+     * Snaps displayed progress to the target values.
      */
-    private float getRightEdge() {
-        return getWidth() - getPaddingRight();
+    private void finishProgressAnimation() {
+        pendingFrameWork &= ~FRAME_ANIMATE;
+        progressAnimator.jumpTo(ProgressAnimator.PRIMARY, primaryProgressValue);
+        geometry.setPrimaryProgressValue(primaryProgressValue);
+        cancelSecondaryProgressAnimation();
+        invalidateGeometry();
     }
 
-    private float getContentWidth() {
-        return getRightEdge() - getLeftEdge();
+    /**
+     * Commits staged value changes right away: updates the geometry, invalidates what moved and
+     * notifies the listener once with the latest primary progress.
+     */
+    private void commitPendingChanges() {
+        pendingFrameWork &= ~FRAME_COMMIT;
+        invalidateGeometry();
+        if (pendingProgressNotification) {
+            pendingProgressNotification = false;
+            if (shouldNotifyProgress(pendingNotificationFromUser)) {
+                dispatchProgressChanged(primaryProgressValue, pendingNotificationFromUser);
+            }
+        }
     }
 
     /**
-     * @return The right/ending edge of the primary progress bar's rectangle.
+     * Applies the notification rule to the committed primary progress.
      */
-    private float getPrimaryProgressRightEdge() {
-        return (primaryProgressValue / maxProgressValue) * getContentWidth() + getLeftEdge();
+    private boolean shouldNotifyProgress(boolean fromUser) {
+        if (progressNotificationRule == NOTIFY_ON_VALUE_CHANGE) {
+            return true;
+        }
+        // Target value's pixel, so that animations don't delay notifications
+        int pixel = Math.round(geometry.xOf(primaryProgressValue));
+        // Before layout every value maps to the same pixel
+        if (!fromUser && pixel == lastNotifiedPixel && geometry.getContentWidth() > 0) {
+            return false;
+        }
+        lastNotifiedPixel = pixel;
+        return true;
+    }
+
+    private void dispatchProgressChanged(double progress, boolean fromUser) {
+        if (!hasProgressListeners()) {
+            return;
+        }
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        if (onProgressChangedListener != null) {
+            onProgressChangedListener.onProgressChanged(this, (float) progress, fromUser);
+        }
+        if (onLongProgressChangedListener != null) {
+            onLongProgressChangedListener.onProgressChanged(this, Math.round(progress), fromUser);
+        }
+        int needs = 0;
+        if (listenerDispatcher.size() > 0) {
+            needs = listenerDispatcher.dispatchProgressChanged(
+                    progress, fromUser, SystemClock.uptimeMillis());
+        }
+        recordDispatch(startNanos);
+        if ((needs & ProgressListenerDispatcher.NEEDS_FRAME) != 0) {
+            if (inFrame) {
+                // Flushed at the end of the running frame
+                pendingFrameWork |= FRAME_DISPATCH;
+            } else {
+                requestFrame(FRAME_DISPATCH);
+            }
+        }
+        if ((needs & ProgressListenerDispatcher.NEEDS_THROTTLE_TIMER) != 0) {
+            dispatchThrottledProgressChanged();
+        }
+    }
+
+    private boolean hasProgressListeners() {
+        return onProgressChangedListener != null || onLongProgressChangedListener != null
+                || listenerDispatcher.size() > 0;
     }
 
     /**
-     * @return The right/ending edge of the secondary progress bar's rectangle.
+     * Delivers to the throttled listeners that are due and re-arms the timer for the rest.
+     * While suspended the timer isn't armed, listeners get the latest progress once the view
+     * is shown.
      */
-    private float getSecondaryProgressRightEdge() {
-        return ((secondaryProgressValue / maxProgressValue) * getRightEdge() + getLeftEdge());
+    private void dispatchThrottledProgressChanged() {
+        mainHandler.removeCallbacks(throttledDispatchRunnable);
+        if (suspended) {
+            return;
+        }
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        long delay = listenerDispatcher.dispatchThrottled(SystemClock.uptimeMillis());
+        recordDispatch(startNanos);
+        if (delay >= 0) {
+            mainHandler.postDelayed(throttledDispatchRunnable, delay);
+        }
     }
 
     /**
-     *
-     * @return Thumbs center for X axis.
+     * Stages value on the UI thread, or publishes it to be drained there.
      */
-    private float getThumbCenterX() {
-        if (isDragging) {
-            // Calculate delta in value between current thumb center and primary progress value
-            float thumbPrimaryDeltaValue =
-                    Math.abs(lastX - getPrimaryProgressRightEdge()) / getContentWidth() * maxProgressValue;
-            // If value is greater than thumbSnapValue the thumb should start moving
-            if (thumbPrimaryDeltaValue > thumbSnapValue) {
-                return lastX;
+    private void postPrimaryProgressValue(double primaryProgressValue) {
+        if (!isOnUiThread()) {
+            if (pendingProgress.publishPrimary(primaryProgressValue)) {
+                mainHandler.post(drainPendingProgressRunnable);
+            }
+            return;
+        }
+        stagePrimaryProgressValue(primaryProgressValue, isDragging);
+        requestFrame(FRAME_COMMIT);
+    }
+
+    private void postSecondaryProgressValue(double secondaryProgressValue) {
+        if (!isOnUiThread()) {
+            if (pendingProgress.publishSecondary(secondaryProgressValue)) {
+                mainHandler.post(drainPendingProgressRunnable);
             }
+            return;
         }
-        return getPrimaryProgressRightEdge();
+        stageSecondaryProgressValue(secondaryProgressValue);
+        requestFrame(FRAME_COMMIT);
     }
 
-    private float getThumbLeftEdge() {
-        return getThumbCenterX() - thumbSize / 2;
+    private boolean isOnUiThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * Applies the newest progress values published from other threads.
+     */
+    private void drainPendingProgress() {
+        int pending = pendingProgress.drain();
+        if ((pending & PendingProgress.SECONDARY) != 0) {
+            postSecondaryProgressValue(pendingProgress.getSecondary());
+        }
+        if ((pending & PendingProgress.PRIMARY) != 0) {
+            postPrimaryProgressValue(pendingProgress.getPrimary());
+        }
     }
 
-    private float getThumbRightEdge() {
-        return getThumbCenterX() + thumbSize / 2;
+    //region Drag
+
+    /**
+     * Called by {@link TouchEventHandler} when a drag starts at x.
+     */
+    void onDragStart(float x) {
+        if (getRangeThumbCount() > 0) {
+            onRangeDragStart(x);
+            return;
+        }
+        setLastX(x);
+        snapReleased = false;
+        onStartTrackingTouch();
+        invalidateGeometry();
+        requestScrubPreview();
     }
 
-    private float getThumbTopEdge() {
-        return getCenterY() - thumbSize / 2;
+    /**
+     * Called by {@link TouchEventHandler} with the latest x of every move, emits progress with
+     * fromUser set once the thumb left the snap range.
+     */
+    void onDragMove(float x) {
+        if (getRangeThumbCount() > 0) {
+            onRangeDragMove(x);
+            return;
+        }
+        setLastX(x);
+        double value = geometry.valueAt(lastX);
+        if (!snapReleased && Math.abs(value - primaryProgressValue) > thumbSnapValue) {
+            snapReleased = true;
+        }
+        if (snapReleased && value != primaryProgressValue) {
+            stagePrimaryProgressValue(value, true);
+            commitPendingChanges();
+        } else {
+            invalidateGeometry();
+        }
+        requestScrubPreview();
     }
 
-    private float getThumbBottomEdge() {
-        return getCenterY() + thumbSize / 2;
+    /**
+     * Called by {@link TouchEventHandler} when the finger lifts at x.
+     */
+    void onDragEnd(float x) {
+        if (getRangeThumbCount() > 0) {
+            onRangeDragMove(x);
+            onRangeDragEnd();
+            return;
+        }
+        setLastX(x);
+        stagePrimaryProgressValue(geometry.valueAt(lastX), true);
+        commitPendingChanges();
+        onEndTrackingTouch();
     }
 
-    //endregion
+    /**
+     * Called by {@link TouchEventHandler} when the gesture is cancelled.
+     */
+    void onDragCancel() {
+        if (getRangeThumbCount() > 0) {
+            onRangeDragEnd();
+            return;
+        }
+        onEndTrackingTouch();
+    }
 
-    //region Helper
+    /**
+     * Starts dragging the range thumb hit by x, if any. Touches farther than a thumb size from
+     * every thumb are ignored.
+     */
+    private void onRangeDragStart(float x) {
+        updateDrawingRectangles();
+        draggedRangeThumb = renderer.getRangeThumbs().hitTest(x, thumbSize);
+        if (draggedRangeThumb < 0) {
+            return;
+        }
+        draggedRangeThumbPicked = false;
+        if (onProgressChangedListener != null) {
+            onProgressChangedListener.onTouchStart(this);
+        }
+        listenerDispatcher.dispatchTouchStart();
+    }
+
+    private void onRangeDragMove(float x) {
+        if (draggedRangeThumb < 0) {
+            return;
+        }
+        double value = geometry.valueAt(geometry.clampX(x));
+        if (!draggedRangeThumbPicked) {
+            RangeThumbs thumbs = renderer.getRangeThumbs();
+            double current = thumbs.getValue(draggedRangeThumb);
+            if (value == current) {
+                return;
+            }
+            // Thumbs sharing a value can't pass each other, move the one on the drag's side
+            draggedRangeThumb = thumbs.pickAmongEqual(draggedRangeThumb, value > current);
+            draggedRangeThumbPicked = true;
+        }
+        moveRangeThumb(draggedRangeThumb, value, true);
+    }
+
+    private void onRangeDragEnd() {
+        if (draggedRangeThumb < 0) {
+            return;
+        }
+        draggedRangeThumb = -1;
+        if (onProgressChangedListener != null) {
+            onProgressChangedListener.onTouchEnd(this);
+        }
+        listenerDispatcher.dispatchTouchEnd();
+    }
+
+    /**
+     * Requests the preview frame of the dragged position, prefetching in the drag's direction.
+     */
+    private void requestScrubPreview() {
+        if (scrubPreviewLoader == null) {
+            return;
+        }
+        float contentWidth = geometry.getContentWidth();
+        float velocity = contentWidth == 0 ? 0 :
+                (float) (touchEventHandler.getVelocity() * (maxProgressValue - minProgressValue)
+                        / contentWidth);
+        scrubPreviewLoader.request((float) geometry.valueAt(lastX), velocity);
+    }
+
+    //endregion
 
     private void onStartTrackingTouch() {
         isDragging = true;
+        if (progressAnimator.isRunning()) {
+            finishProgressAnimation();
+        }
+        geometry.setDragging(true, lastX);
         if (onProgressChangedListener != null) {
             onProgressChangedListener.onTouchStart(this);
         }
+        listenerDispatcher.dispatchTouchStart();
     }
 
     private void onEndTrackingTouch() {
         isDragging = false;
+        if (scrubPreviewLoader != null) {
+            scrubPreviewLoader.cancel();
+        }
+        geometry.setDragging(false, lastX);
+        invalidateGeometry();
         if (onProgressChangedListener != null) {
             onProgressChangedListener.onTouchEnd(this);
         }
+        listenerDispatcher.dispatchTouchEnd();
     }
 
     //endregion
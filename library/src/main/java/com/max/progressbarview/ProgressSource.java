@@ -0,0 +1,29 @@
+package com.max.progressbarview;
+
+/**
+ * Progress pulled by a {@link ProgressBarView} instead of pushed to it, e.g. a media player.
+ * <p>
+ * The view polls it at most once per display frame, on the UI thread, and only while attached
+ * and visible, so however often the underlying values change the bar only reads the latest ones.
+ * Implementations have to be cheap and must not allocate, typically by reading fields the player
+ * keeps up to date.
+ */
+public interface ProgressSource {
+
+    /**
+     * @return Primary progress, such as the playback position.
+     */
+    long getCurrentPosition();
+
+    /**
+     * @return Secondary progress, such as the buffered position.
+     */
+    long getBufferedPosition();
+
+    /**
+     * @return Max progress value, or a value not above 0 while it is unknown, which keeps the
+     * current one.
+     */
+    long getDuration();
+
+}
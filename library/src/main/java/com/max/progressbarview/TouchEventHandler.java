@@ -1,29 +1,156 @@
 package com.max.progressbarview;
 
 import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 
 import java.lang.ref.WeakReference;
 
 /**
  * Created by marseltzatzo on 11/07/2017.
+ * <p>
+ * Turns touch events into drag callbacks on {@link ProgressBarView}.
+ * <p>
+ * Every batched historical sample of a move is fed to a {@link VelocityRing}, and the view
+ * receives the latest position of each event so progress follows the finger during the drag.
+ * Inside a scrolling container the drag only starts once the finger moved horizontally past the
+ * touch slop, so vertical scrolls are left to the parent. Nothing is allocated on the move path.
  */
-
 public class TouchEventHandler {
 
     private final static String TAG = TouchEventHandler.class.getSimpleName();
 
+    private static final int STATE_IDLE = 0;
+
+    /**
+     * Down happened in a scrolling container, waiting to tell a drag from a scroll.
+     */
+    private static final int STATE_PENDING = 1;
+
+    private static final int STATE_DRAGGING = 2;
+
     private WeakReference<ProgressBarView> progressViewWeakReference;
 
+    private final VelocityRing velocityRing = new VelocityRing();
+
+    private final int touchSlop;
+
+    private int state = STATE_IDLE;
+
+    private float downX;
+    private float downY;
+
     public TouchEventHandler(ProgressBarView progressBarView) {
         this.progressViewWeakReference = new WeakReference<ProgressBarView>(progressBarView);
+        this.touchSlop = ViewConfiguration.get(progressBarView.getContext()).getScaledTouchSlop();
     }
 
     public boolean onTouchEvent(MotionEvent event) {
         ProgressBarView progressBarView = this.progressViewWeakReference.get();
-        if (progressBarView != null) {
-
+        if (progressBarView == null) {
+            return false;
+        }
+        float x = event.getX();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                velocityRing.clear();
+                velocityRing.add(x, event.getEventTime());
+                downX = x;
+                downY = event.getY();
+                if (isInScrollingContainer(progressBarView)) {
+                    state = STATE_PENDING;
+                } else {
+                    startDrag(progressBarView, x);
+                }
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                addSamples(event);
+                if (state == STATE_PENDING) {
+                    float dx = Math.abs(x - downX);
+                    float dy = Math.abs(event.getY() - downY);
+                    if (dx > touchSlop && dx > dy) {
+                        startDrag(progressBarView, x);
+                    } else if (dy > touchSlop) {
+                        // It's a scroll, let the parent have it
+                        state = STATE_IDLE;
+                        return false;
+                    }
+                } else if (state == STATE_DRAGGING) {
+                    progressBarView.onDragMove(x);
+                }
+                break;
+            }
+            case MotionEvent.ACTION_UP: {
+                addSamples(event);
+                if (state == STATE_PENDING) {
+                    // A tap, seek to it
+                    startDrag(progressBarView, x);
+                }
+                if (state == STATE_DRAGGING) {
+                    progressBarView.onDragEnd(x);
+                }
+                state = STATE_IDLE;
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL: {
+                if (state == STATE_DRAGGING) {
+                    progressBarView.onDragCancel();
+                }
+                state = STATE_IDLE;
+                break;
+            }
         }
         return true;
     }
 
+    /**
+     * @return True while the user drags the thumb.
+     */
+    public boolean isDragging() {
+        return state == STATE_DRAGGING;
+    }
+
+    /**
+     * @return Current horizontal velocity of the drag in pixels per second.
+     */
+    public float getVelocity() {
+        return velocityRing.computeVelocity();
+    }
+
+    private void startDrag(ProgressBarView progressBarView, float x) {
+        state = STATE_DRAGGING;
+        ViewParent parent = progressBarView.getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        progressBarView.onDragStart(x);
+    }
+
+    /**
+     * Feeds the batched historical samples and the current one to the velocity ring.
+     */
+    private void addSamples(MotionEvent event) {
+        int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            velocityRing.add(event.getHistoricalX(i), event.getHistoricalEventTime(i));
+        }
+        velocityRing.add(event.getX(), event.getEventTime());
+    }
+
+    /**
+     * @return True if any parent may scroll, in which case drags shouldn't start on down.
+     */
+    private static boolean isInScrollingContainer(ProgressBarView progressBarView) {
+        ViewParent parent = progressBarView.getParent();
+        while (parent instanceof ViewGroup) {
+            if (((ViewGroup) parent).shouldDelayChildPressedState()) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,80 @@
+package com.max.progressbarview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/**
+ * Caches the static part of the bar (background track and secondary progress) in a bitmap, so
+ * that frames where only the primary progress or the thumb move draw a single bitmap instead of
+ * rasterizing the track again.
+ * <p>
+ * The bitmap only covers the bar's rectangle and is reused for as long as the bar's size doesn't
+ * change. It is redrawn only after {@link #invalidate()}.
+ */
+final class TrackLayerCache {
+
+    private final Canvas layerCanvas = new Canvas();
+
+    private Bitmap layer;
+
+    private boolean dirty = true;
+
+    private int layerLeft;
+    private int layerTop;
+
+    /**
+     * Marks the cached layer as stale, it will be redrawn on the next {@link #draw}.
+     */
+    void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Draws the cached track, redrawing it first if it's stale or the bar changed size.
+     */
+    void draw(Canvas canvas, RectF barRect, Paint barPaint, float[] secondaryProgressLines,
+              int secondaryProgressLineCount, Paint secondaryProgressPaint) {
+        int left = (int) Math.floor(barRect.left);
+        int top = (int) Math.floor(barRect.top);
+        int width = (int) Math.ceil(barRect.right) - left;
+        int height = (int) Math.ceil(barRect.bottom) - top;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            release();
+            layer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            layerCanvas.setBitmap(layer);
+        }
+        if (dirty || left != layerLeft || top != layerTop) {
+            layer.eraseColor(0);
+            layerCanvas.save();
+            layerCanvas.translate(-left, -top);
+            layerCanvas.drawRect(barRect, barPaint);
+            if (secondaryProgressLineCount > 0) {
+                layerCanvas.drawLines(secondaryProgressLines, 0, secondaryProgressLineCount,
+                        secondaryProgressPaint);
+            }
+            layerCanvas.restore();
+            layerLeft = left;
+            layerTop = top;
+            dirty = false;
+        }
+        canvas.drawBitmap(layer, left, top, null);
+    }
+
+    /**
+     * Frees the cached bitmap, it's recreated on the next {@link #draw} if needed.
+     */
+    void release() {
+        if (layer != null) {
+            layerCanvas.setBitmap(null);
+            layer.recycle();
+            layer = null;
+        }
+        dirty = true;
+    }
+
+}
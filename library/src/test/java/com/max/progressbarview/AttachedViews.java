@@ -0,0 +1,43 @@
+package com.max.progressbarview;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Attaches views to a visible window for tests depending on the view's effective visibility.
+ */
+final class AttachedViews {
+
+    private AttachedViews() {
+    }
+
+    /**
+     * Sets view as content of a resumed activity whose window is marked visible, which
+     * Robolectric leaves gone.
+     * @return The activity, e.g. to detach view by replacing the content.
+     */
+    static Activity attach(View view) {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        activity.setContentView(view);
+        View decorView = activity.getWindow().getDecorView();
+        Object attachInfo = ReflectionHelpers.getField(decorView, "mAttachInfo");
+        ReflectionHelpers.setField(attachInfo, "mWindowVisibility", View.VISIBLE);
+        decorView.dispatchWindowVisibilityChanged(View.VISIBLE);
+        return activity;
+    }
+
+    /**
+     * Flags view as drawn, like a draw pass does and Robolectric's doesn't. Until then View
+     * drops every invalidation after the first.
+     */
+    static void markDrawn(View view) {
+        int drawn = ReflectionHelpers.getStaticField(View.class, "PFLAG_DRAWN");
+        int invalidated = ReflectionHelpers.getStaticField(View.class, "PFLAG_INVALIDATED");
+        int flags = ReflectionHelpers.getField(view, "mPrivateFlags");
+        ReflectionHelpers.setField(view, "mPrivateFlags", (flags | drawn) & ~invalidated);
+    }
+
+}
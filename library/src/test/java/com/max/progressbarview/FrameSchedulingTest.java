@@ -0,0 +1,209 @@
+package com.max.progressbarview;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link ProgressBarView} batches its work into frames, with frames driven by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameSchedulingTest {
+
+    private static final long FRAME_NANOS = 16666667;
+
+    private ProgressBarView progressBarView;
+
+    private ManualFrameTicker frameTicker;
+
+    private InvalidationCountingLayout parent;
+
+    private final ProgressBarMetrics metrics = new ProgressBarMetrics();
+
+    private int notifications;
+
+    private int perFrameDeliveries;
+    private float perFrameProgress;
+
+    @Before
+    public void setUp() {
+        progressBarView = new ProgressBarView(RuntimeEnvironment.application);
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        frameTicker = ManualFrameTicker.last;
+        parent = new InvalidationCountingLayout(RuntimeEnvironment.application);
+        parent.addView(progressBarView);
+        AttachedViews.attach(parent);
+        progressBarView.setProgressAnimationEnabled(false);
+        progressBarView.setMaxProgress(1000);
+        frameTicker.frame(FRAME_NANOS);
+        progressBarView.setMetricsEnabled(true);
+        AttachedViews.markDrawn(progressBarView);
+        parent.invalidations = 0;
+    }
+
+    //region Coalescing
+
+    @Test
+    public void settersWithinFrame_commitAndInvalidateOnce() {
+        addListener();
+
+        for (int i = 1; i <= 10; i++) {
+            progressBarView.setPrimaryProgress(i * 10);
+            progressBarView.setSecondaryProgress(i * 20);
+        }
+        assertEquals(0, notifications);
+        assertEquals(0, parent.invalidations);
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+
+        assertEquals(1, notifications);
+        assertEquals(1, parent.invalidations);
+        assertEquals(1, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+    }
+
+    @Test
+    public void editorApply_commitsAllValuesAtOnce() {
+        final float[] seen = new float[3];
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView view, float progress, boolean fromUser) {
+                notifications++;
+                seen[0] = view.getMaxProgressValue();
+                seen[1] = progress;
+                seen[2] = view.getSecondaryProgressValue();
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView view) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView view) {
+            }
+        });
+
+        ProgressBarView.Editor editor = progressBarView.edit()
+                .setMaxProgressValue(2000)
+                .setPrimaryProgressValue(1500)
+                .setSecondaryProgressValue(1800);
+        assertEquals(1000, progressBarView.getMaxProgressValue(), 0);
+        assertEquals(0, progressBarView.getPrimaryProgressValue(), 0);
+        editor.apply();
+
+        assertEquals(1, notifications);
+        assertEquals(2000, seen[0], 0);
+        assertEquals(1500, seen[1], 0);
+        assertEquals(1800, seen[2], 0);
+        assertEquals(1, parent.invalidations);
+        assertEquals(1, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+        // Nothing left for the next frame
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+    }
+
+    //endregion
+
+    //region Per frame delivery
+
+    @Test
+    public void perFrameListener_getsProgressCommittedBySameFrame() {
+        addPerFrameListener();
+
+        progressBarView.setPrimaryProgress(100);
+        progressBarView.setPrimaryProgress(200);
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(1, perFrameDeliveries);
+        assertEquals(200, perFrameProgress, 0);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+    }
+
+    @Test
+    public void perFrameListener_outsideOfFrame_getsProgressOnNextFrame() {
+        addPerFrameListener();
+        progressBarView.setPrimaryProgress(100);
+        frameTicker.frame(FRAME_NANOS);
+        perFrameDeliveries = 0;
+
+        // Editor commits right away, outside of any frame
+        progressBarView.edit().setPrimaryProgressValue(300).apply();
+        assertEquals(0, perFrameDeliveries);
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(1, perFrameDeliveries);
+        assertEquals(300, perFrameProgress, 0);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+    }
+
+    //endregion
+
+    private void addListener() {
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView view, float progress, boolean fromUser) {
+                notifications++;
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView view) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView view) {
+            }
+        });
+    }
+
+    private void addPerFrameListener() {
+        progressBarView.addOnProgressChangedListener(
+                new ProgressBarView.OnProgressChangedListener() {
+                    @Override
+                    public void onProgressChanged(ProgressBarView view, float progress,
+                                                  boolean fromUser) {
+                        perFrameDeliveries++;
+                        perFrameProgress = progress;
+                    }
+
+                    @Override
+                    public void onTouchStart(ProgressBarView view) {
+                    }
+
+                    @Override
+                    public void onTouchEnd(ProgressBarView view) {
+                    }
+                }, ProgressBarView.DELIVERY_PER_FRAME);
+    }
+
+    /**
+     * Counts the invalidations of its child, whether of a rectangle or of the whole child, as
+     * they go up the software rendering path.
+     */
+    private static class InvalidationCountingLayout extends FrameLayout {
+
+        int invalidations;
+
+        InvalidationCountingLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+            invalidations++;
+            return super.invalidateChildInParent(location, dirty);
+        }
+
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.max.progressbarview;
+
+/**
+ * Frame clock driven by the test: scheduled callbacks only run when {@link #frame(long)} is
+ * called.
+ */
+class ManualFrameTicker extends FrameTicker {
+
+    /**
+     * Ticker created by the last view that used {@link #FACTORY}.
+     */
+    static ManualFrameTicker last;
+
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public FrameTicker create(Callback callback) {
+            last = new ManualFrameTicker(callback);
+            return last;
+        }
+    };
+
+    private long frameTimeNanos;
+
+    ManualFrameTicker(Callback callback) {
+        super(callback);
+    }
+
+    /**
+     * Advances the clock and runs the scheduled callback, if any.
+     * @return True if a frame ran.
+     */
+    boolean frame(long elapsedNanos) {
+        frameTimeNanos += elapsedNanos;
+        if (!isScheduled()) {
+            return false;
+        }
+        dispatchFrame(frameTimeNanos);
+        return true;
+    }
+
+    @Override
+    long nowNanos() {
+        return frameTimeNanos;
+    }
+
+    @Override
+    void post() {
+    }
+
+    @Override
+    void remove() {
+    }
+
+}
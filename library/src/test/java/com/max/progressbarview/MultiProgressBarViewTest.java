@@ -0,0 +1,154 @@
+package com.max.progressbarview;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives a {@link MultiProgressBarView} through row changes and clipped draws, recording what it
+ * draws.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MultiProgressBarViewTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static final int WIDTH = 1000;
+    private static final int ROW_HEIGHT = 50;
+    private static final int ROW_SPACING = 10;
+    private static final int BAR_COUNT = 5;
+
+    /**
+     * Floats per row in drawLines' points: x0, y, x1, y.
+     */
+    private static final int LINE_SIZE = 4;
+
+    private MultiProgressBarView multiProgressBarView;
+
+    private RecordingCanvas canvas;
+
+    @Before
+    public void setUp() {
+        multiProgressBarView = new MultiProgressBarView(RuntimeEnvironment.application);
+        multiProgressBarView.setRowHeight(ROW_HEIGHT);
+        multiProgressBarView.setRowSpacing(ROW_SPACING);
+        multiProgressBarView.setBarCount(BAR_COUNT);
+        layout();
+        canvas = new RecordingCanvas();
+    }
+
+    //region Rows
+
+    @Test
+    public void setBarCount_grow_keepsRowsAndResetsNewOnes() {
+        multiProgressBarView.setBar(1, 0, 100, 50, 60);
+
+        multiProgressBarView.setBarCount(8);
+
+        assertEquals(8, multiProgressBarView.getBarCount());
+        assertEquals(100, multiProgressBarView.getMaxProgressValue(1), DELTA);
+        assertEquals(50, multiProgressBarView.getPrimaryProgressValue(1), DELTA);
+        assertEquals(60, multiProgressBarView.getSecondaryProgressValue(1), DELTA);
+        assertEquals(0, multiProgressBarView.getMinProgressValue(7), DELTA);
+        assertEquals(1, multiProgressBarView.getMaxProgressValue(7), DELTA);
+        assertEquals(0, multiProgressBarView.getPrimaryProgressValue(7), DELTA);
+    }
+
+    @Test
+    public void setBarCount_shrink_dropsRowsAndRegrowsThemReset() {
+        multiProgressBarView.setBar(4, 0, 100, 50, 60);
+
+        multiProgressBarView.setBarCount(2);
+        assertEquals(2, multiProgressBarView.getBarCount());
+        multiProgressBarView.setBarCount(BAR_COUNT);
+
+        assertEquals(1, multiProgressBarView.getMaxProgressValue(4), DELTA);
+        assertEquals(0, multiProgressBarView.getPrimaryProgressValue(4), DELTA);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void setBarCount_shrink_rejectsDroppedRows() {
+        multiProgressBarView.setBarCount(2);
+
+        multiProgressBarView.setPrimaryProgressValue(2, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setBarCount_negative_throws() {
+        multiProgressBarView.setBarCount(-1);
+    }
+
+    @Test
+    public void progressOutsideOfRange_isClampedToBar() {
+        multiProgressBarView.setBar(0, 10, 20, 25, 5);
+        multiProgressBarView.setBar(1, 10, 20, 15, 15);
+
+        multiProgressBarView.onDraw(canvas);
+
+        // Primary lines are drawn last
+        assertEquals(WIDTH, lineEndX(0), DELTA);
+        assertEquals(WIDTH / 2, lineEndX(1), DELTA);
+    }
+
+    //endregion
+
+    //region Drawing
+
+    @Test
+    public void onDraw_drawsAllRowsInThreeCalls() {
+        multiProgressBarView.onDraw(canvas);
+
+        assertEquals(3, canvas.linesCount);
+        assertEquals(3, canvas.getDrawCount());
+        assertEquals(0, canvas.lastLinesOffset);
+        assertEquals(BAR_COUNT * LINE_SIZE, canvas.lastLinesCount);
+    }
+
+    @Test
+    public void onDraw_drawsOnlyRowsInsideClip() {
+        // From the middle of row 1 to the spacing after row 2
+        int pitch = ROW_HEIGHT + ROW_SPACING;
+        canvas.setClip(0, pitch + ROW_HEIGHT / 2, WIDTH, pitch * 3 - 1);
+
+        multiProgressBarView.onDraw(canvas);
+
+        assertEquals(3, canvas.getDrawCount());
+        assertEquals(LINE_SIZE, canvas.lastLinesOffset);
+        assertEquals(2 * LINE_SIZE, canvas.lastLinesCount);
+    }
+
+    @Test
+    public void onDraw_afterRowUpdate_drawsOnlyThatRow() {
+        // Clip of the rectangle invalidated by a row update
+        int top = (BAR_COUNT - 1) * (ROW_HEIGHT + ROW_SPACING);
+        canvas.setClip(0, top, WIDTH, top + ROW_HEIGHT);
+
+        multiProgressBarView.onDraw(canvas);
+
+        assertEquals(3, canvas.getDrawCount());
+        assertEquals((BAR_COUNT - 1) * LINE_SIZE, canvas.lastLinesOffset);
+        assertEquals(LINE_SIZE, canvas.lastLinesCount);
+    }
+
+    //endregion
+
+    private float lineEndX(int row) {
+        return canvas.lastLines[row * LINE_SIZE + 2];
+    }
+
+    private void layout() {
+        multiProgressBarView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        multiProgressBarView.layout(0, 0, WIDTH, multiProgressBarView.getMeasuredHeight());
+    }
+
+}
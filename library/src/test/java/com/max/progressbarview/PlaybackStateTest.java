@@ -0,0 +1,115 @@
+package com.max.progressbarview;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProgressBarView}'s playback extrapolation, with frames driven by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PlaybackStateTest {
+
+    private static final long FRAME_NANOS = 16000000;
+
+    private Activity activity;
+
+    private ProgressBarView progressBarView;
+
+    private ManualFrameTicker frameTicker;
+
+    @Before
+    public void setUp() {
+        progressBarView = new ProgressBarView(RuntimeEnvironment.application);
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        frameTicker = ManualFrameTicker.last;
+        activity = AttachedViews.attach(progressBarView);
+        progressBarView.setMaxProgress(60000);
+    }
+
+    @Test
+    public void playback_advancesWithFrameTime() {
+        progressBarView.setPlaybackState(1000, 1, SystemClock.elapsedRealtime());
+        assertTrue(frameTicker.frame(0));
+        assertEquals(1000, progressBarView.getPrimaryProgress());
+
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1016, progressBarView.getPrimaryProgress());
+
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1032, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void playback_accountsForUpdateTimeAndSpeed() {
+        progressBarView.setPlaybackState(1000, 2, SystemClock.elapsedRealtime() - 500);
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(2032, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void playback_isClampedToMax() {
+        progressBarView.setPlaybackState(59990, 1, SystemClock.elapsedRealtime());
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(60000, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void rewind_isClampedToMin() {
+        progressBarView.setMinProgress(5000);
+        progressBarView.setPlaybackState(5010, -1, SystemClock.elapsedRealtime());
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(5000, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void pausedPlayback_requestsNoFrames() {
+        progressBarView.setPlaybackState(1000, 0, SystemClock.elapsedRealtime());
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1000, progressBarView.getPrimaryProgress());
+
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+    }
+
+    @Test
+    public void playback_stopsWhileHidden() {
+        progressBarView.setPlaybackState(1000, 1, SystemClock.elapsedRealtime());
+        frameTicker.frame(FRAME_NANOS);
+
+        progressBarView.setVisibility(View.GONE);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+
+        // Catches up with the time spent hidden on the first visible frame
+        progressBarView.setVisibility(View.VISIBLE);
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1048, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void clearPlaybackState_keepsLastPosition() {
+        progressBarView.setPlaybackState(1000, 1, SystemClock.elapsedRealtime());
+        frameTicker.frame(FRAME_NANOS);
+
+        progressBarView.clearPlaybackState();
+
+        assertFalse(progressBarView.isPlaybackStateSet());
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1016, progressBarView.getPrimaryProgress());
+    }
+
+}
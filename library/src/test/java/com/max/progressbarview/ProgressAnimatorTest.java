@@ -0,0 +1,65 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link ProgressAnimator}.
+ */
+public class ProgressAnimatorTest {
+
+    private static final float DELTA = 0.0001f;
+    private static final long MILLIS = 1000000L;
+
+    private ProgressAnimator animator;
+
+    @Before
+    public void setUp() {
+        // Linear, 100ms
+        animator = new ProgressAnimator(100, null);
+    }
+
+    @Test
+    public void step_interpolatesFromFirstFrameAndSettles() {
+        animator.animateTo(ProgressAnimator.PRIMARY, 10);
+
+        assertTrue(animator.step(1000 * MILLIS));
+        assertEquals(0, animator.getValue(ProgressAnimator.PRIMARY), DELTA);
+
+        assertTrue(animator.step(1050 * MILLIS));
+        assertEquals(5, animator.getValue(ProgressAnimator.PRIMARY), DELTA);
+
+        assertFalse(animator.step(1100 * MILLIS));
+        assertEquals(10, animator.getValue(ProgressAnimator.PRIMARY), DELTA);
+        assertFalse(animator.isRunning());
+    }
+
+    @Test
+    public void animateTo_retargetsFromDisplayedValue() {
+        animator.animateTo(ProgressAnimator.PRIMARY, 10);
+        animator.step(0);
+        animator.step(50 * MILLIS);
+
+        animator.animateTo(ProgressAnimator.PRIMARY, 0);
+        animator.step(60 * MILLIS);
+        assertEquals(5, animator.getValue(ProgressAnimator.PRIMARY), DELTA);
+
+        animator.step(110 * MILLIS);
+        assertEquals(2.5f, animator.getValue(ProgressAnimator.PRIMARY), DELTA);
+    }
+
+    @Test
+    public void jumpTo_cancelsAnimation() {
+        animator.animateTo(ProgressAnimator.SECONDARY, 10);
+        animator.jumpTo(ProgressAnimator.SECONDARY, 3);
+
+        assertFalse(animator.isRunning());
+        assertFalse(animator.step(0));
+        assertEquals(3, animator.getValue(ProgressAnimator.SECONDARY), DELTA);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.max.progressbarview;
+
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a {@link ProgressBarDrawable} through levels, bounds changes and draws, recording what
+ * it draws.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressBarDrawableTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 20;
+
+    private ProgressBarDrawable drawable;
+
+    private RecordingCanvas canvas;
+
+    private int invalidations;
+
+    @Before
+    public void setUp() {
+        drawable = new ProgressBarDrawable(RuntimeEnvironment.application);
+        drawable.setMaxProgressValue(200);
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        drawable.setCallback(new Drawable.Callback() {
+            @Override
+            public void invalidateDrawable(Drawable who) {
+                invalidations++;
+            }
+
+            @Override
+            public void scheduleDrawable(Drawable who, Runnable what, long when) {
+            }
+
+            @Override
+            public void unscheduleDrawable(Drawable who, Runnable what) {
+            }
+        });
+        canvas = new RecordingCanvas();
+    }
+
+    @Test
+    public void setLevel_mapsToPrimaryProgress() {
+        assertTrue(drawable.setLevel(2500));
+
+        assertEquals(50, drawable.getPrimaryProgressValue(), DELTA);
+        assertEquals(1, invalidations);
+        drawable.draw(canvas);
+        assertEquals(WIDTH / 4, canvas.lastRectRight, DELTA);
+    }
+
+    @Test
+    public void setLevel_toCurrentProgress_changesNothing() {
+        drawable.setPrimaryProgressValue(100);
+        invalidations = 0;
+
+        assertFalse(drawable.setLevel(5000));
+
+        assertEquals(100, drawable.getPrimaryProgressValue(), DELTA);
+        assertEquals(0, invalidations);
+    }
+
+    @Test
+    public void boundsChange_scalesProgress() {
+        drawable.setPrimaryProgressValue(100);
+        drawable.draw(canvas);
+        assertEquals(WIDTH / 2, canvas.lastRectRight, DELTA);
+
+        drawable.setBounds(0, 0, WIDTH * 2, HEIGHT);
+        drawable.draw(canvas);
+
+        assertEquals(WIDTH, canvas.lastRectRight, DELTA);
+    }
+
+    @Test
+    public void draw_issuesBarSecondaryAndPrimary() {
+        drawable.setPrimaryProgressValue(50);
+        drawable.setSecondaryProgressValue(100);
+
+        drawable.draw(canvas);
+
+        assertEquals(2, canvas.rectCount);
+        assertEquals(1, canvas.linesCount);
+        assertEquals(0, canvas.ovalCount);
+        assertEquals(3, canvas.getDrawCount());
+    }
+
+    @Test
+    public void draw_withThumbVisible_drawsThumbOvals() {
+        drawable.setThumbVisible(true);
+
+        drawable.draw(canvas);
+
+        assertEquals(2, canvas.ovalCount);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.max.progressbarview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Local unit tests for {@link ProgressBarStyle}'s values, paints need a device.
+ */
+public class ProgressBarStyleTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void buildUpon_copiesEveryValue() {
+        ProgressBarStyle style = new ProgressBarStyle.Builder()
+                .setBarColor(1)
+                .setPrimaryColor(2)
+                .setSecondaryColor(3)
+                .setThumbFillColor(4)
+                .setThumbStrokeColor(5)
+                .setMarkerColor(6)
+                .setWaveformColor(7)
+                .setThumbSize(8)
+                .setThumbBorderSize(9)
+                .setMarkerWidth(10)
+                .build();
+
+        ProgressBarStyle copy = style.buildUpon().build();
+
+        assertEquals(style, copy);
+        assertEquals(style.hashCode(), copy.hashCode());
+        assertEquals(7, copy.getWaveformColor());
+        assertEquals(8, copy.getThumbSize());
+        assertEquals(9, copy.getThumbBorderSize(), DELTA);
+        assertEquals(10, copy.getMarkerWidth(), DELTA);
+    }
+
+    @Test
+    public void equals_comparesValues() {
+        ProgressBarStyle style = new ProgressBarStyle.Builder().setBarColor(1).build();
+
+        assertNotEquals(style, style.buildUpon().setBarColor(2).build());
+        assertNotEquals(style, style.buildUpon().setMarkerWidth(0.5f).build());
+    }
+
+}
@@ -0,0 +1,570 @@
+package com.max.progressbarview;
+
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a {@link ProgressBarView} through inflation, setters, drags and animations on the JVM,
+ * recording what it draws. Guards the hot paths: drawing a frame must issue exactly the
+ * expected draw operations, and drawing, invalidating and handling touch events must not
+ * allocate once warmed up.
+ * <p>
+ * Robolectric's View.draw only draws the background, so frames call onDraw directly.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressBarViewRenderingTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 150;
+
+    private static final int WARM_UP_ITERATIONS = 100;
+    private static final int ITERATIONS = 1000;
+
+    /**
+     * Budget for a whole measured loop, well below a single allocation per iteration.
+     */
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    private static final int DRAG_MOVES = 50;
+
+    private static final long FRAME_NANOS = 16000000;
+
+    private ProgressBarView progressBarView;
+
+    private RecordingCanvas canvas;
+
+    @Before
+    public void setUp() {
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.maxProgressValue, "100")
+                .addAttribute(R.attr.primaryProgressValue, "25")
+                .addAttribute(R.attr.secondaryProgressValue, "50")
+                .build();
+        progressBarView = new ProgressBarView(RuntimeEnvironment.application, attrs);
+        layout(progressBarView);
+        canvas = new RecordingCanvas();
+    }
+
+    //region Inflation
+
+    @Test
+    public void inflate_appliesAttributes() {
+        assertEquals(100, progressBarView.getMaxProgressValue(), DELTA);
+        assertEquals(25, progressBarView.getPrimaryProgressValue(), DELTA);
+        assertEquals(50, progressBarView.getSecondaryProgressValue(), DELTA);
+        assertEquals(1, progressBarView.getSecondaryProgressRangeCount());
+    }
+
+    @Test
+    public void inflate_notifiesNoListener() {
+        final int[] notifications = new int[1];
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView view, float progress, boolean fromUser) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView view) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView view) {
+            }
+        });
+
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+
+        assertEquals(0, notifications[0]);
+    }
+
+    //endregion
+
+    //region Draw calls
+
+    @Test
+    public void draw_issuesOneOperationPerLayer() {
+        progressBarView.onDraw(canvas);
+
+        // Track and primary progress, secondary progress, thumb stroke and fill
+        assertEquals(2, canvas.rectCount);
+        assertEquals(1, canvas.linesCount);
+        assertEquals(2, canvas.ovalCount);
+        assertEquals(0, canvas.bitmapCount);
+        assertEquals(0, canvas.otherCount);
+    }
+
+    @Test
+    public void draw_withMarkers_addsSingleOperation() {
+        progressBarView.setMarkers(new float[]{10, 20, 30, 40});
+
+        progressBarView.onDraw(canvas);
+
+        assertEquals(2, canvas.linesCount);
+        assertEquals(6, canvas.getDrawCount());
+    }
+
+    @Test
+    public void draw_withMarkers_skipsHiddenOnesAndDrawsVisibleOnesAtOnce() {
+        // Outside of the bar, sharing 50's pixel column, then visible ones, unsorted
+        progressBarView.setMarkers(new float[]{150, 90, -10, 50.01f, 10, 50});
+
+        progressBarView.onDraw(canvas);
+
+        // Secondary progress, then every visible marker in a single call
+        assertEquals(2, canvas.linesCount);
+        assertEquals(3 * 4, canvas.lastLinesCount);
+        int offset = canvas.lastLinesOffset;
+        assertEquals(WIDTH * 0.1f, canvas.lastLines[offset], 1);
+        assertEquals(WIDTH * 0.5f, canvas.lastLines[offset + 4], 1);
+        assertEquals(WIDTH * 0.9f, canvas.lastLines[offset + 8], 1);
+    }
+
+    @Test
+    public void draw_withTrackCache_drawsTrackAsBitmap() {
+        progressBarView.setTrackCacheEnabled(true);
+
+        progressBarView.onDraw(canvas);
+
+        assertEquals(1, canvas.bitmapCount);
+        assertEquals(1, canvas.rectCount);
+        assertEquals(0, canvas.linesCount);
+        assertEquals(2, canvas.ovalCount);
+    }
+
+    @Test
+    public void setters_dontChangeDrawCount() {
+        progressBarView.onDraw(canvas);
+        int drawCount = canvas.getDrawCount();
+
+        for (int i = 0; i < 100; i++) {
+            progressBarView.edit()
+                    .setPrimaryProgressValue(i)
+                    .setSecondaryProgressValue(100 - i)
+                    .apply();
+            canvas.reset();
+            progressBarView.onDraw(canvas);
+            assertEquals(drawCount, canvas.getDrawCount());
+        }
+    }
+
+    @Test
+    public void animation_drawsSameOperationsEveryFrame() {
+        // Robolectric's frame times follow the wall clock, frames are driven by hand instead
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        ManualFrameTicker frameTicker = ManualFrameTicker.last;
+        progressBarView.onDraw(canvas);
+        int drawCount = canvas.getDrawCount();
+        float startRight = canvas.lastRectRight;
+        progressBarView.setProgressAnimationEnabled(true);
+        progressBarView.setProgressAnimationDuration(200);
+
+        progressBarView.setPrimaryProgressValue(75);
+        float previousRight = startRight;
+        int movingFrames = 0;
+        for (int frame = 0; frame < 30; frame++) {
+            frameTicker.frame(FRAME_NANOS);
+            canvas.reset();
+            progressBarView.onDraw(canvas);
+            assertEquals(drawCount, canvas.getDrawCount());
+            assertTrue(canvas.lastRectRight >= previousRight);
+            if (canvas.lastRectRight > previousRight) {
+                movingFrames++;
+            }
+            previousRight = canvas.lastRectRight;
+        }
+
+        assertTrue("animation moved in " + movingFrames + " frames", movingFrames > 1);
+        assertEquals(WIDTH * 0.75f, previousRight, 1);
+    }
+
+    @Test
+    public void setter_thenTouchBeforeFrame_drawsNewProgress() {
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        progressBarView.setPrimaryProgressValue(50);
+        // Input runs before the frame that commits the setter
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN,
+                WIDTH * 0.1f, HEIGHT / 2f, 0);
+        progressBarView.onTouchEvent(down);
+        down.recycle();
+
+        ManualFrameTicker.last.frame(FRAME_NANOS);
+        progressBarView.onDraw(canvas);
+
+        assertEquals(50, progressBarView.getPrimaryProgressValue(), DELTA);
+        assertEquals(WIDTH * 0.5f, canvas.lastRectRight, 1);
+    }
+
+    @Test
+    public void secondarySetter_thenDragBeforeFrame_drawsNewSecondaryProgress() {
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        progressBarView.setSecondaryProgressValue(80);
+        MotionEvent[] events = obtainDrag(0, WIDTH * 0.1f, WIDTH * 0.2f);
+        dispatch(events);
+        recycle(events);
+
+        ManualFrameTicker.last.frame(FRAME_NANOS);
+        progressBarView.onDraw(canvas);
+
+        // Secondary progress is the only lines drawn
+        assertEquals(1, canvas.linesCount);
+        assertEquals(WIDTH * 0.8f, canvas.lastLines[canvas.lastLinesOffset + 2], 1);
+    }
+
+    @Test
+    public void drag_drawsSameOperationsEveryFrame() {
+        progressBarView.onDraw(canvas);
+        int drawCount = canvas.getDrawCount();
+        MotionEvent[] events = obtainDrag(0);
+
+        for (MotionEvent event : events) {
+            progressBarView.onTouchEvent(event);
+            canvas.reset();
+            progressBarView.onDraw(canvas);
+            assertEquals(drawCount, canvas.getDrawCount());
+        }
+
+        recycle(events);
+    }
+
+    //endregion
+
+    //region Allocations
+
+    @Test
+    public void draw_doesntAllocate() {
+        long allocated = Allocations.measure(WARM_UP_ITERATIONS, ITERATIONS,
+                new Allocations.Loop() {
+                    @Override
+                    public void run(int iteration) {
+                        drawFrame(iteration);
+                    }
+                });
+
+        assertTrue("drawing allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void invalidate_doesntAllocate() {
+        // Robolectric's shadow of View.invalidate allocates by itself, measured on a plain view
+        View plainView = new View(RuntimeEnvironment.application);
+        layout(plainView);
+        long baseline = measureInvalidations(plainView);
+
+        long allocated = measureInvalidations(progressBarView) - baseline;
+
+        assertTrue("invalidate allocated " + allocated + " bytes",
+                allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void onTouchEvent_doesntAllocate() {
+        final MotionEvent[] events = obtainDrag(0);
+        long allocated = Allocations.measure(WARM_UP_ITERATIONS / 10, ITERATIONS / 10,
+                new Allocations.Loop() {
+                    @Override
+                    public void run(int iteration) {
+                        dispatch(events);
+                    }
+                });
+
+        recycle(events);
+        assertTrue("touch events allocated " + allocated + " bytes",
+                allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void draw_withMetricsEnabled_doesntAllocate() {
+        progressBarView.setMetricsEnabled(true);
+        final ProgressBarMetrics snapshot = new ProgressBarMetrics();
+        long allocated = Allocations.measure(WARM_UP_ITERATIONS, ITERATIONS,
+                new Allocations.Loop() {
+                    @Override
+                    public void run(int iteration) {
+                        drawFrame(iteration);
+                        progressBarView.getMetrics(snapshot);
+                    }
+                });
+
+        assertTrue("drawing allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    //endregion
+
+    //region Metrics
+
+    @Test
+    public void metrics_countDrawsTouchesAndCoalescedUpdates() {
+        progressBarView.setMetricsEnabled(true);
+        ProgressBarMetrics snapshot = new ProgressBarMetrics();
+
+        progressBarView.setPrimaryProgressValue(30);
+        progressBarView.setPrimaryProgressValue(40);
+        progressBarView.setPrimaryProgressValue(50);
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        progressBarView.onDraw(canvas);
+        MotionEvent[] events = obtainDrag(0);
+        dispatch(events);
+        recycle(events);
+        progressBarView.getMetrics(snapshot);
+
+        assertEquals(1, snapshot.getDrawCount());
+        assertTrue(snapshot.getDrawTimeNanos() > 0);
+        assertEquals(events.length, snapshot.getTouchEventCount());
+        // The second and third values were merged into the first one's frame
+        assertTrue(snapshot.getCoalescedInvalidationCount() >= 2);
+        assertTrue(snapshot.getInvalidationRequestCount()
+                > snapshot.getCoalescedInvalidationCount());
+        assertTrue(snapshot.getGeometryUpdateCount() > 0);
+
+        progressBarView.resetMetrics();
+        progressBarView.getMetrics(snapshot);
+        assertEquals(0, snapshot.getDrawCount());
+        assertEquals(0, snapshot.getTouchEventCount());
+    }
+
+    @Test
+    public void metrics_whenDisabled_areZero() {
+        progressBarView.onDraw(canvas);
+
+        ProgressBarMetrics snapshot = progressBarView.getMetrics(new ProgressBarMetrics());
+
+        assertEquals(0, snapshot.getDrawCount());
+        assertEquals(0, snapshot.getInvalidationRequestCount());
+    }
+
+    //endregion
+
+    //region Sub-pixel changes
+
+    @Test
+    public void subPixelChange_skipsInvalidation() {
+        // 2 hours in seconds on about a thousand pixels
+        progressBarView.edit().setMaxProgressValue(7200).setPrimaryProgressValue(3600).apply();
+        progressBarView.setMetricsEnabled(true);
+        ProgressBarMetrics snapshot = new ProgressBarMetrics();
+
+        progressBarView.edit().setPrimaryProgressValue(3601).apply();
+        progressBarView.getMetrics(snapshot);
+        assertEquals(snapshot.getInvalidationRequestCount(),
+                snapshot.getCoalescedInvalidationCount());
+
+        progressBarView.edit().setPrimaryProgressValue(3660).apply();
+        progressBarView.getMetrics(snapshot);
+        assertTrue(snapshot.getInvalidationRequestCount()
+                > snapshot.getCoalescedInvalidationCount());
+    }
+
+    @Test
+    public void pixelChangeRule_notifiesOnlyWhenPixelChanges() {
+        final int[] notifications = new int[1];
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView view, float progress, boolean fromUser) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView view) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView view) {
+            }
+        });
+        progressBarView.setProgressNotificationRule(ProgressBarView.NOTIFY_ON_PIXEL_CHANGE);
+        progressBarView.edit().setMaxProgressValue(7200).setPrimaryProgressValue(3600).apply();
+        notifications[0] = 0;
+
+        for (int second = 3601; second <= 3640; second++) {
+            progressBarView.edit().setPrimaryProgressValue(second).apply();
+        }
+
+        // About 7 seconds per pixel, 40 seconds move 6 pixels
+        assertTrue(notifications[0] > 0);
+        assertTrue(notifications[0] < 10);
+    }
+
+    //endregion
+
+    //region Range thumbs
+
+    @Test
+    public void rangeThumbs_drawOneOvalPairPerThumb() {
+        progressBarView.setRangeThumbValues(new float[]{60, 20, 90});
+
+        progressBarView.onDraw(canvas);
+
+        assertEquals(3, progressBarView.getRangeThumbCount());
+        assertEquals(20, progressBarView.getRangeThumbValue(0), DELTA);
+        assertEquals(90, progressBarView.getRangeThumbValue(2), DELTA);
+        assertEquals(2, canvas.rectCount);
+        assertEquals(6, canvas.ovalCount);
+    }
+
+    @Test
+    public void rangeDrag_movesHitThumbWithinNeighbours() {
+        final int[] changes = new int[2];
+        progressBarView.setOnRangeThumbChangedListener(
+                new ProgressBarView.OnRangeThumbChangedListener() {
+                    @Override
+                    public void onRangeThumbChanged(ProgressBarView view, int index, float value,
+                                                    boolean fromUser) {
+                        assertTrue(fromUser);
+                        changes[index]++;
+                    }
+                });
+        progressBarView.setRangeThumbValues(new float[]{20, 60});
+        MotionEvent[] events = obtainDrag(0, WIDTH * 0.2f, WIDTH);
+
+        dispatch(events);
+
+        recycle(events);
+        assertEquals(60, progressBarView.getRangeThumbValue(0), DELTA);
+        assertEquals(60, progressBarView.getRangeThumbValue(1), DELTA);
+        assertEquals(25, progressBarView.getPrimaryProgressValue(), DELTA);
+        assertTrue(changes[0] > 0);
+        assertEquals(0, changes[1]);
+    }
+
+    @Test
+    public void rangeDrag_doesntAllocate() {
+        progressBarView.setRangeThumbValues(new float[]{20, 60});
+        // Out and back, so that every drag starts on the thumb
+        final MotionEvent[] out = obtainDrag(0, WIDTH * 0.2f, WIDTH * 0.5f);
+        final MotionEvent[] back = obtainDrag(1000, WIDTH * 0.5f, WIDTH * 0.2f);
+        long allocated = Allocations.measure(WARM_UP_ITERATIONS / 10, ITERATIONS / 10,
+                new Allocations.Loop() {
+                    @Override
+                    public void run(int iteration) {
+                        dispatch(out);
+                        dispatch(back);
+                    }
+                });
+
+        recycle(out);
+        recycle(back);
+        assertEquals(20, progressBarView.getRangeThumbValue(0), DELTA);
+        assertTrue("range drags allocated " + allocated + " bytes",
+                allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    //endregion
+
+    //region Long progress
+
+    @Test
+    public void longProgress_isKeptExactlyAndDeliveredAsLong() {
+        final long[] delivered = new long[1];
+        progressBarView.setOnLongProgressChangedListener(
+                new ProgressBarView.OnLongProgressChangedListener() {
+                    @Override
+                    public void onProgressChanged(ProgressBarView view, long progress,
+                                                  boolean fromUser) {
+                        delivered[0] = progress;
+                    }
+                });
+        // Past 2^24, where consecutive values collapse as floats
+        long max = 10L * 60 * 60 * 1000;
+        long position = max / 2 + 1;
+
+        progressBarView.edit().setMaxProgress(max).setPrimaryProgress(position).apply();
+
+        assertEquals(max, progressBarView.getMaxProgress());
+        assertEquals(position, progressBarView.getPrimaryProgress());
+        assertEquals(position, delivered[0]);
+        progressBarView.onDraw(canvas);
+        assertEquals(WIDTH / 2f, canvas.lastRectRight, 1);
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static void layout(View view) {
+        view.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Moves the progress synchronously, then invalidates and draws like a frame would.
+     */
+    private void drawFrame(int i) {
+        progressBarView.edit()
+                .setPrimaryProgressValue(i % 100)
+                .apply();
+        canvas.reset();
+        progressBarView.onDraw(canvas);
+    }
+
+    /**
+     * @return Down, moves across the whole width and up, obtained upfront.
+     */
+    private static MotionEvent[] obtainDrag(long downTime) {
+        return obtainDrag(downTime, 0, WIDTH);
+    }
+
+    /**
+     * @return Down at fromX, moves to toX and up there, obtained upfront.
+     */
+    private static MotionEvent[] obtainDrag(long downTime, float fromX, float toX) {
+        MotionEvent[] events = new MotionEvent[DRAG_MOVES + 2];
+        float y = HEIGHT / 2f;
+        events[0] = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, fromX, y, 0);
+        for (int i = 1; i <= DRAG_MOVES; i++) {
+            events[i] = MotionEvent.obtain(downTime, downTime + i * 8, MotionEvent.ACTION_MOVE,
+                    fromX + (toX - fromX) * i / DRAG_MOVES, y, 0);
+        }
+        long upTime = downTime + (DRAG_MOVES + 1) * 8;
+        events[DRAG_MOVES + 1] = MotionEvent.obtain(downTime, upTime, MotionEvent.ACTION_UP,
+                toX, y, 0);
+        return events;
+    }
+
+    private void dispatch(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            progressBarView.onTouchEvent(event);
+        }
+    }
+
+    private static void recycle(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+
+    /**
+     * @return Bytes allocated by invalidating view, once warmed up.
+     */
+    private static long measureInvalidations(final View view) {
+        return Allocations.measure(WARM_UP_ITERATIONS, ITERATIONS, new Allocations.Loop() {
+            @Override
+            public void run(int iteration) {
+                view.invalidate();
+            }
+        });
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,129 @@
+package com.max.progressbarview;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProgressBarView}'s polling of a {@link ProgressSource}, with a fake source
+ * and frames driven by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressSourceTest {
+
+    private static final long FRAME_NANOS = 16666667;
+
+    private Activity activity;
+
+    private ProgressBarView progressBarView;
+
+    private ManualFrameTicker frameTicker;
+
+    private FakeProgressSource source;
+
+    @Before
+    public void setUp() {
+        progressBarView = new ProgressBarView(RuntimeEnvironment.application);
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        frameTicker = ManualFrameTicker.last;
+        activity = AttachedViews.attach(progressBarView);
+        source = new FakeProgressSource();
+        source.duration = 60000;
+    }
+
+    @Test
+    public void source_isPolledOncePerFrame() {
+        progressBarView.setProgressSource(source);
+
+        // Many player ticks between two frames
+        for (int i = 1; i <= 10; i++) {
+            source.position = i * 10;
+        }
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+
+        assertEquals(1, source.polls);
+        assertEquals(60000, progressBarView.getMaxProgress());
+        assertEquals(100, progressBarView.getPrimaryProgress());
+
+        source.position = 200;
+        source.bufferedPosition = 5000;
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+
+        assertEquals(2, source.polls);
+        assertEquals(200, progressBarView.getPrimaryProgress());
+        assertEquals(5000, progressBarView.getSecondaryProgress());
+    }
+
+    @Test
+    public void source_isNotPolledWhileHidden() {
+        progressBarView.setProgressSource(source);
+        frameTicker.frame(FRAME_NANOS);
+
+        progressBarView.setVisibility(View.GONE);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1, source.polls);
+
+        progressBarView.setVisibility(View.VISIBLE);
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(2, source.polls);
+    }
+
+    @Test
+    public void source_isNotPolledWhileDetached() {
+        progressBarView.setProgressSource(source);
+        frameTicker.frame(FRAME_NANOS);
+
+        activity.setContentView(new View(activity));
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1, source.polls);
+    }
+
+    @Test
+    public void removingSource_stopsPolling() {
+        progressBarView.setProgressSource(source);
+        frameTicker.frame(FRAME_NANOS);
+
+        progressBarView.setProgressSource(null);
+
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1, source.polls);
+    }
+
+    private static class FakeProgressSource implements ProgressSource {
+
+        long position;
+        long bufferedPosition;
+        long duration;
+
+        int polls;
+
+        @Override
+        public long getCurrentPosition() {
+            polls++;
+            return position;
+        }
+
+        @Override
+        public long getBufferedPosition() {
+            return bufferedPosition;
+        }
+
+        @Override
+        public long getDuration() {
+            return duration;
+        }
+
+    }
+
+}
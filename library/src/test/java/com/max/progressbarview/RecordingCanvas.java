@@ -0,0 +1,119 @@
+package com.max.progressbarview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Canvas that counts the draw operations issued on it instead of rasterizing them. Counters are
+ * primitive so that recording doesn't allocate.
+ */
+class RecordingCanvas extends Canvas {
+
+    int rectCount;
+    int linesCount;
+    int ovalCount;
+    int bitmapCount;
+    int otherCount;
+
+    /**
+     * Right edge of the last rectangle drawn, which is the primary progress' for the view.
+     */
+    float lastRectRight;
+
+    /**
+     * Arguments of the last drawLines call, the array itself rather than a copy.
+     */
+    float[] lastLines;
+    int lastLinesOffset;
+    int lastLinesCount;
+
+    /**
+     * Clip reported by {@link #getClipBounds(Rect)}, null to report none.
+     */
+    private Rect clip;
+
+    void setClip(int left, int top, int right, int bottom) {
+        clip = new Rect(left, top, right, bottom);
+    }
+
+    void reset() {
+        rectCount = 0;
+        linesCount = 0;
+        ovalCount = 0;
+        bitmapCount = 0;
+        otherCount = 0;
+    }
+
+    int getDrawCount() {
+        return rectCount + linesCount + ovalCount + bitmapCount + otherCount;
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        rectCount++;
+        lastRectRight = rect.right;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        rectCount++;
+        lastRectRight = right;
+    }
+
+    @Override
+    public boolean getClipBounds(Rect bounds) {
+        if (clip == null) {
+            return false;
+        }
+        bounds.set(clip);
+        return !clip.isEmpty();
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        linesCount++;
+        lastLines = pts;
+        lastLinesOffset = offset;
+        lastLinesCount = count;
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        drawLines(pts, 0, pts.length, paint);
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        ovalCount++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        bitmapCount++;
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        otherCount++;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        otherCount++;
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        otherCount++;
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        otherCount++;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.max.progressbarview;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link ProgressBarView} suspends its per frame work while detached or hidden, with
+ * frames driven by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SuspensionTest {
+
+    private static final long FRAME_NANOS = 16666667;
+
+    private Activity activity;
+
+    private ProgressBarView progressBarView;
+
+    private ManualFrameTicker frameTicker;
+
+    private final ProgressBarMetrics metrics = new ProgressBarMetrics();
+
+    @Before
+    public void setUp() {
+        progressBarView = new ProgressBarView(RuntimeEnvironment.application);
+        progressBarView.setFrameTickerFactory(ManualFrameTicker.FACTORY);
+        frameTicker = ManualFrameTicker.last;
+        activity = AttachedViews.attach(progressBarView);
+        progressBarView.setProgressAnimationEnabled(false);
+        progressBarView.setMaxProgress(1000);
+        frameTicker.frame(FRAME_NANOS);
+        progressBarView.setMetricsEnabled(true);
+    }
+
+    @Test
+    public void hiddenView_skipsFramesAndGeometry() {
+        progressBarView.setVisibility(View.INVISIBLE);
+
+        for (int i = 1; i <= 10; i++) {
+            progressBarView.setPrimaryProgress(i * 10);
+        }
+
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(0, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+        assertEquals(100, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void shownAgain_catchesUpWithSingleUpdate() {
+        progressBarView.setVisibility(View.INVISIBLE);
+        for (int i = 1; i <= 10; i++) {
+            progressBarView.setPrimaryProgress(i * 10);
+        }
+
+        progressBarView.setVisibility(View.VISIBLE);
+        frameTicker.frame(FRAME_NANOS);
+
+        assertEquals(1, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+    }
+
+    @Test
+    public void detachedView_skipsFrames() {
+        activity.setContentView(new View(activity));
+
+        progressBarView.setPrimaryProgress(500);
+
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(0, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+    }
+
+    @Test
+    public void hiding_finishesAnimation() {
+        progressBarView.setProgressAnimationEnabled(true);
+        progressBarView.setPrimaryProgress(500);
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+
+        progressBarView.setVisibility(View.GONE);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+
+        progressBarView.setVisibility(View.VISIBLE);
+        assertFalse(frameTicker.frame(FRAME_NANOS));
+        assertEquals(500, progressBarView.getPrimaryProgress());
+    }
+
+    @Test
+    public void hiddenView_stillNotifiesListener() {
+        final int[] notifications = new int[1];
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView progressBarView, float progress,
+                                          boolean fromUser) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView progressBarView) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView progressBarView) {
+            }
+        });
+        progressBarView.setVisibility(View.INVISIBLE);
+
+        progressBarView.setPrimaryProgress(10);
+        progressBarView.setPrimaryProgress(20);
+
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        assertEquals(1, notifications[0]);
+        assertEquals(0, progressBarView.getMetrics(metrics).getGeometryUpdateCount());
+    }
+
+    @Test
+    public void hiddenView_withPixelRule_catchesUpWhenShown() {
+        int width = 1000;
+        progressBarView.measure(
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+        progressBarView.layout(0, 0, width, 100);
+        progressBarView.setProgressNotificationRule(ProgressBarView.NOTIFY_ON_PIXEL_CHANGE);
+        final int[] notifications = new int[1];
+        progressBarView.setOnProgressChangedListener(new ProgressBarView.OnProgressChangedListener() {
+            @Override
+            public void onProgressChanged(ProgressBarView progressBarView, float progress,
+                                          boolean fromUser) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void onTouchStart(ProgressBarView progressBarView) {
+            }
+
+            @Override
+            public void onTouchEnd(ProgressBarView progressBarView) {
+            }
+        });
+        progressBarView.setVisibility(View.INVISIBLE);
+
+        // The notification rule converts the value to a pixel while the view is hidden
+        progressBarView.setPrimaryProgress(500);
+        assertTrue(frameTicker.frame(FRAME_NANOS));
+        progressBarView.setVisibility(View.VISIBLE);
+        RecordingCanvas canvas = new RecordingCanvas();
+        progressBarView.onDraw(canvas);
+
+        assertEquals(1, notifications[0]);
+        assertEquals(width / 2, canvas.lastRectRight, 1);
+    }
+
+}
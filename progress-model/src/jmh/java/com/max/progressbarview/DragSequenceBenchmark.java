@@ -0,0 +1,73 @@
+package com.max.progressbarview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work done by the view for one drag, from touch down to release, without touch
+ * dispatch and drawing: every move clamps the touch, converts it to a value, tracks velocity and
+ * updates the geometry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DragSequenceBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 150;
+
+    /**
+     * About one second of moves at 120 Hz.
+     */
+    private static final int MOVES = 120;
+
+    private ProgressBarGeometry geometry;
+
+    private VelocityRing velocityRing;
+
+    private float[] touchXs;
+
+    @Setup
+    public void setUp() {
+        geometry = new ProgressBarGeometry();
+        geometry.setLayout(WIDTH, HEIGHT, 0, 0);
+        geometry.setThumbSize(HEIGHT);
+        geometry.setMaxProgressValue(1);
+        geometry.update();
+        velocityRing = new VelocityRing();
+        // Drags past both edges so that clamping is exercised
+        touchXs = new float[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            touchXs[i] = -100 + (WIDTH + 200) * (float) Math.sin(Math.PI * i / MOVES);
+        }
+    }
+
+    @Benchmark
+    public double drag() {
+        velocityRing.clear();
+        double value = 0;
+        for (int i = 0; i < MOVES; i++) {
+            long timeMillis = i * 8;
+            float x = geometry.clampX(touchXs[i]);
+            value = geometry.valueAt(x);
+            velocityRing.add(x, timeMillis);
+            geometry.setDragging(true, x);
+            geometry.setPrimaryProgressValue(value);
+            geometry.update();
+            geometry.clearDirtyRegion();
+        }
+        float velocity = velocityRing.computeVelocity();
+        geometry.setDragging(false, 0);
+        geometry.update();
+        geometry.clearDirtyRegion();
+        return value + velocity;
+    }
+
+}
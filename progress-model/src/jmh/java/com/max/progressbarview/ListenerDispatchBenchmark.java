@@ -0,0 +1,72 @@
+package com.max.progressbarview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures dispatching one progress change followed by a frame to listeners of every delivery
+ * policy, as the view does while dragging.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListenerDispatchBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int listenersPerPolicy;
+
+    private ProgressListenerDispatcher<Listener> dispatcher;
+
+    private long nowMillis;
+
+    @Setup
+    public void setUp() {
+        dispatcher = new ProgressListenerDispatcher<>(
+                new ProgressListenerDispatcher.Invoker<Listener>() {
+                    @Override
+                    public void onProgressChanged(Listener listener, double progress,
+                                                  boolean fromUser) {
+                        listener.progress = progress;
+                    }
+
+                    @Override
+                    public void onTouchStart(Listener listener) {
+                    }
+
+                    @Override
+                    public void onTouchEnd(Listener listener) {
+                    }
+                });
+        for (int i = 0; i < listenersPerPolicy; i++) {
+            dispatcher.add(new Listener(), ProgressListenerDispatcher.DELIVERY_IMMEDIATE, 0);
+            dispatcher.add(new Listener(), ProgressListenerDispatcher.DELIVERY_PER_FRAME, 0);
+            dispatcher.add(new Listener(), ProgressListenerDispatcher.DELIVERY_THROTTLED, 100);
+        }
+    }
+
+    @Benchmark
+    public long dispatchFrame() {
+        nowMillis += 8;
+        dispatcher.dispatchProgressChanged(nowMillis, true, nowMillis);
+        dispatcher.dispatchFrame(nowMillis);
+        return dispatcher.dispatchThrottled(nowMillis);
+    }
+
+    /**
+     * Listener whose only work is keeping the value, which the dispatcher's arrays keep alive.
+     */
+    private static final class Listener {
+
+        double progress;
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.max.progressbarview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures geometry updates of a phone sized bar, for a progress change alone and for a layout
+ * change that recomputes everything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProgressBarGeometryBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 150;
+    private static final int STEPS = 1000;
+
+    private ProgressBarGeometry geometry;
+
+    private int step;
+
+    @Setup
+    public void setUp() {
+        geometry = new ProgressBarGeometry();
+        geometry.setLayout(WIDTH, HEIGHT, 16, 16);
+        geometry.setThumbSize(HEIGHT);
+        geometry.setMaxProgressValue(STEPS);
+        geometry.update();
+    }
+
+    @Benchmark
+    public int updatePrimaryProgress() {
+        step = (step + 1) % STEPS;
+        geometry.setPrimaryProgressValue(step);
+        int dirty = geometry.update();
+        geometry.clearDirtyRegion();
+        return dirty;
+    }
+
+    @Benchmark
+    public int updateLayout() {
+        step = (step + 1) % STEPS;
+        // Alternates between two widths so that every update is a full one
+        geometry.setLayout(WIDTH - (step & 1), HEIGHT, 16, 16);
+        int dirty = geometry.update();
+        geometry.clearDirtyRegion();
+        return dirty;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.max.progressbarview;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free mailbox for progress values published from worker threads.
+ * <p>
+ * Values are stored as double bits in atomics, so any number of threads can publish while the UI
+ * thread only ever picks up the newest value. A publish only asks for a drain when none is
+ * already pending, which keeps at most one drain message in the main thread's queue.
+ */
+final class PendingProgress {
+
+    static final int PRIMARY = 1;
+    static final int SECONDARY = 1 << 1;
+
+    private final AtomicLong primaryBits = new AtomicLong();
+    private final AtomicLong secondaryBits = new AtomicLong();
+
+    /**
+     * Mask of the values published since the last {@link #drain()}.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @return True if the caller has to schedule a {@link #drain()}.
+     */
+    boolean publishPrimary(double value) {
+        primaryBits.set(Double.doubleToRawLongBits(value));
+        return markPending(PRIMARY);
+    }
+
+    /**
+     * @return True if the caller has to schedule a {@link #drain()}.
+     */
+    boolean publishSecondary(double value) {
+        secondaryBits.set(Double.doubleToRawLongBits(value));
+        return markPending(SECONDARY);
+    }
+
+    /**
+     * Clears the pending mask. Values have to be read after this call, so that a value published
+     * concurrently is either read now or triggers another drain.
+     * @return Mask of the values published since the last drain.
+     */
+    int drain() {
+        return pending.getAndSet(0);
+    }
+
+    double getPrimary() {
+        return Double.longBitsToDouble(primaryBits.get());
+    }
+
+    double getSecondary() {
+        return Double.longBitsToDouble(secondaryBits.get());
+    }
+
+    private boolean markPending(int flag) {
+        while (true) {
+            int current = pending.get();
+            if ((current & flag) != 0) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current | flag)) {
+                return current == 0;
+            }
+        }
+    }
+
+}
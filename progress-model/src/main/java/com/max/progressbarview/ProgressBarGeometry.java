@@ -0,0 +1,434 @@
+package com.max.progressbarview;
+
+/**
+ * Geometry of a {@code ProgressBarView}, kept in primitive fields so that it can be recomputed
+ * on every frame without allocating.
+ * <p>
+ * Layout derived values (content width, bar edges, value to pixel scale) are cached and only
+ * recomputed when size or padding change. Every setter marks just the parts of the geometry it
+ * affects as dirty and {@link #update()} recomputes those parts only.
+ * <p>
+ * While recomputing, the union of the old and new bounds of everything that moved is accumulated
+ * in a dirty region, so that the view can invalidate just that area. The primary progress edge,
+ * and the thumb following it, are snapped to whole pixels: a change that doesn't reach the next
+ * pixel leaves the region empty.
+ */
+final class ProgressBarGeometry {
+
+    //region Dirty flags
+
+    static final int DIRTY_LAYOUT = 1;
+    static final int DIRTY_PRIMARY = 1 << 1;
+    static final int DIRTY_SECONDARY = 1 << 2;
+    static final int DIRTY_THUMB = 1 << 3;
+    static final int DIRTY_ALL = DIRTY_LAYOUT | DIRTY_PRIMARY | DIRTY_SECONDARY | DIRTY_THUMB;
+
+    //endregion
+
+    //region Inputs
+
+    private int width = 0;
+    private int height = 0;
+    private int paddingLeft = 0;
+    private int paddingRight = 0;
+
+    private float barHeightCoefficient = 0.2f;
+
+    /**
+     * Progress values are doubles, which hold long progress such as byte counts exactly up to
+     * 2^53 and keep their mapping to pixels exact.
+     */
+    private double minProgressValue = 0;
+    private double maxProgressValue = 1;
+    private double primaryProgressValue = 0;
+
+    /**
+     * Values between which secondary progress changed since the last update.
+     */
+    private double changedSecondaryFromValue = 0;
+    private double changedSecondaryToValue = 0;
+    private float thumbSnapValue = 0;
+
+    private int thumbSize = 0;
+
+    private boolean dragging = false;
+    private float touchX = 0;
+
+    //endregion
+
+    //region Outputs
+
+    private float leftEdge;
+    private float rightEdge;
+    private float contentWidth;
+    private float centerY;
+    private float barTopEdge;
+    private float barBottomEdge;
+
+    /**
+     * Pixels per progress unit, i.e. contentWidth / (maxProgressValue - minProgressValue).
+     */
+    private double valueToPixel;
+
+    private float primaryProgressRightEdge;
+
+    private float thumbCenterX;
+    private float thumbLeftEdge;
+    private float thumbTopEdge;
+    private float thumbRightEdge;
+    private float thumbBottomEdge;
+
+    //endregion
+
+    private int dirty = DIRTY_ALL;
+
+    /**
+     * Parts recomputed on behalf of a conversion, which the next {@link #update()} still reports
+     * so that whatever derives from them, such as the renderer's rectangles, catches up.
+     */
+    private int unreported = 0;
+
+    //region Dirty region
+
+    /**
+     * True when the layout changed and the whole view has to be redrawn.
+     */
+    private boolean fullInvalidation = true;
+    private boolean dirtyRegionEmpty = true;
+    private float dirtyLeft;
+    private float dirtyTop;
+    private float dirtyRight;
+    private float dirtyBottom;
+
+    //endregion
+
+    //region Setters
+
+    /**
+     * @param width         View's width.
+     * @param height        View's height.
+     * @param paddingLeft   View's left padding.
+     * @param paddingRight  View's right padding.
+     */
+    void setLayout(int width, int height, int paddingLeft, int paddingRight) {
+        if (this.width == width && this.height == height
+                && this.paddingLeft == paddingLeft && this.paddingRight == paddingRight) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        this.paddingLeft = paddingLeft;
+        this.paddingRight = paddingRight;
+        this.dirty |= DIRTY_LAYOUT;
+    }
+
+    void setBarHeightCoefficient(float barHeightCoefficient) {
+        if (this.barHeightCoefficient != barHeightCoefficient) {
+            this.barHeightCoefficient = barHeightCoefficient;
+            this.dirty |= DIRTY_LAYOUT;
+        }
+    }
+
+    void setMinProgressValue(double minProgressValue) {
+        if (this.minProgressValue != minProgressValue) {
+            this.minProgressValue = minProgressValue;
+            this.dirty |= DIRTY_LAYOUT;
+        }
+    }
+
+    void setMaxProgressValue(double maxProgressValue) {
+        if (this.maxProgressValue != maxProgressValue) {
+            this.maxProgressValue = maxProgressValue;
+            this.dirty |= DIRTY_LAYOUT;
+        }
+    }
+
+    void setPrimaryProgressValue(double primaryProgressValue) {
+        if (this.primaryProgressValue != primaryProgressValue) {
+            this.primaryProgressValue = primaryProgressValue;
+            this.dirty |= DIRTY_PRIMARY;
+        }
+    }
+
+    /**
+     * Marks the secondary progress between two values as changed, the span is added to the dirty
+     * region on the next update.
+     */
+    void invalidateSecondaryProgress(double fromValue, double toValue) {
+        if ((dirty & DIRTY_SECONDARY) == 0) {
+            changedSecondaryFromValue = fromValue;
+            changedSecondaryToValue = toValue;
+            this.dirty |= DIRTY_SECONDARY;
+        } else {
+            changedSecondaryFromValue = Math.min(changedSecondaryFromValue, fromValue);
+            changedSecondaryToValue = Math.max(changedSecondaryToValue, toValue);
+        }
+    }
+
+    void setThumbSnapValue(float thumbSnapValue) {
+        if (this.thumbSnapValue != thumbSnapValue) {
+            this.thumbSnapValue = thumbSnapValue;
+            this.dirty |= DIRTY_THUMB;
+        }
+    }
+
+    void setThumbSize(int thumbSize) {
+        if (this.thumbSize != thumbSize) {
+            this.thumbSize = thumbSize;
+            this.dirty |= DIRTY_THUMB;
+        }
+    }
+
+    /**
+     * @param dragging  True while the user drags the thumb.
+     * @param touchX    Clamped x of the touch event, ignored while not dragging.
+     */
+    void setDragging(boolean dragging, float touchX) {
+        if (this.dragging != dragging || (dragging && this.touchX != touchX)) {
+            this.dragging = dragging;
+            this.touchX = touchX;
+            this.dirty |= DIRTY_THUMB;
+        }
+    }
+
+    //endregion
+
+    //region Getters
+
+    boolean isDirty() {
+        return dirty != 0 || unreported != 0;
+    }
+
+    float getLeftEdge() {
+        return leftEdge;
+    }
+
+    float getRightEdge() {
+        return rightEdge;
+    }
+
+    float getContentWidth() {
+        return contentWidth;
+    }
+
+    float getCenterY() {
+        return centerY;
+    }
+
+    float getBarTopEdge() {
+        return barTopEdge;
+    }
+
+    float getBarBottomEdge() {
+        return barBottomEdge;
+    }
+
+    float getPrimaryProgressRightEdge() {
+        return primaryProgressRightEdge;
+    }
+
+    float getThumbCenterX() {
+        return thumbCenterX;
+    }
+
+    float getThumbLeftEdge() {
+        return thumbLeftEdge;
+    }
+
+    float getThumbTopEdge() {
+        return thumbTopEdge;
+    }
+
+    float getThumbRightEdge() {
+        return thumbRightEdge;
+    }
+
+    float getThumbBottomEdge() {
+        return thumbBottomEdge;
+    }
+
+    float getBarHeight() {
+        return barBottomEdge - barTopEdge;
+    }
+
+    /**
+     * @return True if the layout changed since {@link #clearDirtyRegion()} was last called.
+     */
+    boolean needsFullInvalidation() {
+        return fullInvalidation;
+    }
+
+    /**
+     * @return True if nothing moved since {@link #clearDirtyRegion()} was last called.
+     */
+    boolean isDirtyRegionEmpty() {
+        return dirtyRegionEmpty;
+    }
+
+    float getDirtyLeft() {
+        return dirtyLeft;
+    }
+
+    float getDirtyTop() {
+        return dirtyTop;
+    }
+
+    float getDirtyRight() {
+        return dirtyRight;
+    }
+
+    float getDirtyBottom() {
+        return dirtyBottom;
+    }
+
+    /**
+     * Resets the accumulated dirty region, call it once the region has been invalidated.
+     */
+    void clearDirtyRegion() {
+        fullInvalidation = false;
+        dirtyRegionEmpty = true;
+    }
+
+    //endregion
+
+    //region Conversions
+
+    /**
+     * @param x Any x coordinate.
+     * @return  x clamped between the left and the right edge of the content.
+     */
+    float clampX(float x) {
+        recompute();
+        return x > rightEdge ? rightEdge : (x < leftEdge ? leftEdge : x);
+    }
+
+    /**
+     * @param x X coordinate inside the content.
+     * @return  Progress value that corresponds to x.
+     */
+    double valueAt(float x) {
+        recompute();
+        return valueToPixel == 0
+                ? minProgressValue : minProgressValue + (x - leftEdge) / valueToPixel;
+    }
+
+    /**
+     * @param value Progress value.
+     * @return      X coordinate that corresponds to value.
+     */
+    float xOf(double value) {
+        recompute();
+        return (float) ((value - minProgressValue) * valueToPixel + leftEdge);
+    }
+
+    //endregion
+
+    /**
+     * Recomputes the dirty parts of the geometry.
+     * @return  Mask of the DIRTY_* parts that were recomputed since the last call, including by
+     *          conversions, 0 if nothing changed.
+     */
+    int update() {
+        recompute();
+        int updated = unreported;
+        unreported = 0;
+        return updated;
+    }
+
+    /**
+     * Recomputes the dirty parts of the geometry, leaving them to be reported by the next
+     * {@link #update()}.
+     */
+    private void recompute() {
+        int updated = this.dirty;
+        if (updated == 0) {
+            return;
+        }
+        if ((updated & DIRTY_LAYOUT) != 0) {
+            leftEdge = paddingLeft;
+            rightEdge = width - paddingRight;
+            contentWidth = rightEdge - leftEdge;
+            centerY = height / 2;
+            float barHeight = (int) (barHeightCoefficient * height);
+            barTopEdge = centerY - barHeight / 2;
+            barBottomEdge = centerY + barHeight / 2;
+            double range = maxProgressValue - minProgressValue;
+            valueToPixel = range == 0 ? 0 : contentWidth / range;
+            fullInvalidation = true;
+            updated |= DIRTY_PRIMARY | DIRTY_SECONDARY | DIRTY_THUMB;
+        }
+        if ((updated & DIRTY_PRIMARY) != 0) {
+            float oldRightEdge = primaryProgressRightEdge;
+            // Snapped to whole pixels, so that changes smaller than a pixel move nothing and
+            // leave the dirty region empty
+            primaryProgressRightEdge = Math.round(
+                    (primaryProgressValue - minProgressValue) * valueToPixel + leftEdge);
+            includeBarSpan(oldRightEdge, primaryProgressRightEdge);
+            updated |= DIRTY_THUMB;
+        }
+        if ((updated & DIRTY_SECONDARY) != 0 && (updated & DIRTY_LAYOUT) == 0) {
+            double fromOffset = (changedSecondaryFromValue - minProgressValue) * valueToPixel;
+            double toOffset = (changedSecondaryToValue - minProgressValue) * valueToPixel;
+            includeBarSpan((float) (fromOffset + leftEdge), (float) (toOffset + leftEdge));
+        }
+        if ((updated & DIRTY_THUMB) != 0) {
+            float oldLeftEdge = thumbLeftEdge;
+            float oldTopEdge = thumbTopEdge;
+            float oldRightEdge = thumbRightEdge;
+            float oldBottomEdge = thumbBottomEdge;
+            thumbCenterX = computeThumbCenterX();
+            thumbLeftEdge = thumbCenterX - thumbSize / 2;
+            thumbRightEdge = thumbCenterX + thumbSize / 2;
+            thumbTopEdge = centerY - thumbSize / 2;
+            thumbBottomEdge = centerY + thumbSize / 2;
+            if (oldLeftEdge != thumbLeftEdge || oldTopEdge != thumbTopEdge
+                    || oldRightEdge != thumbRightEdge || oldBottomEdge != thumbBottomEdge) {
+                includeDirtyRegion(oldLeftEdge, oldTopEdge, oldRightEdge, oldBottomEdge);
+                includeDirtyRegion(thumbLeftEdge, thumbTopEdge, thumbRightEdge, thumbBottomEdge);
+            }
+        }
+        this.dirty = 0;
+        unreported |= updated;
+    }
+
+    /**
+     * Adds the part of the bar between two x coordinates to the dirty region.
+     */
+    private void includeBarSpan(float fromX, float toX) {
+        if (fromX != toX) {
+            includeDirtyRegion(Math.min(fromX, toX), barTopEdge, Math.max(fromX, toX), barBottomEdge);
+        }
+    }
+
+    private void includeDirtyRegion(float left, float top, float right, float bottom) {
+        if (dirtyRegionEmpty) {
+            dirtyLeft = left;
+            dirtyTop = top;
+            dirtyRight = right;
+            dirtyBottom = bottom;
+            dirtyRegionEmpty = false;
+        } else {
+            dirtyLeft = Math.min(dirtyLeft, left);
+            dirtyTop = Math.min(dirtyTop, top);
+            dirtyRight = Math.max(dirtyRight, right);
+            dirtyBottom = Math.max(dirtyBottom, bottom);
+        }
+    }
+
+    /**
+     * @return Thumbs center for X axis.
+     */
+    private float computeThumbCenterX() {
+        if (dragging && valueToPixel != 0) {
+            // Calculate delta in value between current thumb center and primary progress value
+            double thumbPrimaryDeltaValue =
+                    Math.abs(touchX - primaryProgressRightEdge) / valueToPixel;
+            // If value is greater than thumbSnapValue the thumb should start moving
+            if (thumbPrimaryDeltaValue > thumbSnapValue) {
+                return touchX;
+            }
+        }
+        return primaryProgressRightEdge;
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.max.progressbarview;
+
+/**
+ * Keeps progress listeners together with their delivery policy, in parallel arrays.
+ * <p>
+ * Arrays are copied on write: registering or removing a listener replaces them, while dispatching
+ * only iterates over the current ones. This keeps dispatching allocation free and makes it safe
+ * for a listener to add or remove listeners from within its callback. Must be used from the UI
+ * thread.
+ * <p>
+ * Listeners are only called through an {@link Invoker}, so the dispatcher doesn't depend on the
+ * listener's type.
+ *
+ * @param <L> Type of the listeners.
+ */
+final class ProgressListenerDispatcher<L> {
+
+    /**
+     * Calls the methods of a listener.
+     */
+    interface Invoker<L> {
+
+        void onProgressChanged(L listener, double progress, boolean fromUser);
+
+        void onTouchStart(L listener);
+
+        void onTouchEnd(L listener);
+
+    }
+
+    /**
+     * Listener is notified synchronously whenever progress is dispatched.
+     */
+    static final int DELIVERY_IMMEDIATE = 0;
+
+    /**
+     * Listener is notified at most once per frame, with the latest progress.
+     */
+    static final int DELIVERY_PER_FRAME = 1;
+
+    /**
+     * Listener is notified at most once per interval, with the latest progress.
+     */
+    static final int DELIVERY_THROTTLED = 2;
+
+    /**
+     * Some listeners are waiting for the next frame.
+     */
+    static final int NEEDS_FRAME = 1;
+
+    /**
+     * Some throttled listeners are waiting for their interval to elapse.
+     */
+    static final int NEEDS_THROTTLE_TIMER = 1 << 1;
+
+    private static final Object[] NO_LISTENERS = new Object[0];
+
+    private final Invoker<L> invoker;
+
+    private Object[] listeners = NO_LISTENERS;
+    private int[] policies = new int[0];
+    private long[] intervalsMillis = new long[0];
+    private long[] lastDeliveriesMillis = new long[0];
+    private boolean[] pendings = new boolean[0];
+
+    private double latestProgress;
+    private boolean latestFromUser;
+
+    ProgressListenerDispatcher(Invoker<L> invoker) {
+        this.invoker = invoker;
+    }
+
+    //region Registration
+
+    /**
+     * Registers a listener, or updates its policy if it is already registered.
+     * @param policy            One of DELIVERY_*.
+     * @param intervalMillis    Minimum interval between deliveries for throttled listeners.
+     */
+    void add(L listener, int policy, long intervalMillis) {
+        int index = indexOf(listener);
+        if (index >= 0) {
+            policies[index] = policy;
+            intervalsMillis[index] = intervalMillis;
+            return;
+        }
+        int size = listeners.length;
+        Object[] newListeners = new Object[size + 1];
+        int[] newPolicies = new int[size + 1];
+        long[] newIntervals = new long[size + 1];
+        long[] newLastDeliveries = new long[size + 1];
+        boolean[] newPendings = new boolean[size + 1];
+        System.arraycopy(listeners, 0, newListeners, 0, size);
+        System.arraycopy(policies, 0, newPolicies, 0, size);
+        System.arraycopy(intervalsMillis, 0, newIntervals, 0, size);
+        System.arraycopy(lastDeliveriesMillis, 0, newLastDeliveries, 0, size);
+        System.arraycopy(pendings, 0, newPendings, 0, size);
+        newListeners[size] = listener;
+        newPolicies[size] = policy;
+        newIntervals[size] = intervalMillis;
+        newLastDeliveries[size] = Long.MIN_VALUE / 2;
+        listeners = newListeners;
+        policies = newPolicies;
+        intervalsMillis = newIntervals;
+        lastDeliveriesMillis = newLastDeliveries;
+        pendings = newPendings;
+    }
+
+    /**
+     * @return True if the listener was registered.
+     */
+    boolean remove(L listener) {
+        int index = indexOf(listener);
+        if (index < 0) {
+            return false;
+        }
+        int size = listeners.length - 1;
+        Object[] newListeners = size == 0 ? NO_LISTENERS : new Object[size];
+        int[] newPolicies = new int[size];
+        long[] newIntervals = new long[size];
+        long[] newLastDeliveries = new long[size];
+        boolean[] newPendings = new boolean[size];
+        removeAt(listeners, newListeners, index, size);
+        removeAt(policies, newPolicies, index, size);
+        removeAt(intervalsMillis, newIntervals, index, size);
+        removeAt(lastDeliveriesMillis, newLastDeliveries, index, size);
+        removeAt(pendings, newPendings, index, size);
+        listeners = newListeners;
+        policies = newPolicies;
+        intervalsMillis = newIntervals;
+        lastDeliveriesMillis = newLastDeliveries;
+        pendings = newPendings;
+        return true;
+    }
+
+    int size() {
+        return listeners.length;
+    }
+
+    //endregion
+
+    //region Dispatch
+
+    /**
+     * Delivers to immediate listeners and to throttled listeners whose interval has elapsed,
+     * everyone else is marked as pending and will receive the latest value later.
+     * @return Mask of NEEDS_* flags.
+     */
+    int dispatchProgressChanged(double progress, boolean fromUser, long nowMillis) {
+        latestProgress = progress;
+        latestFromUser = fromUser;
+        Object[] listeners = this.listeners;
+        int[] policies = this.policies;
+        long[] intervalsMillis = this.intervalsMillis;
+        long[] lastDeliveriesMillis = this.lastDeliveriesMillis;
+        boolean[] pendings = this.pendings;
+        int result = 0;
+        for (int i = 0; i < listeners.length; i++) {
+            switch (policies[i]) {
+                case DELIVERY_PER_FRAME: {
+                    pendings[i] = true;
+                    result |= NEEDS_FRAME;
+                    break;
+                }
+                case DELIVERY_THROTTLED: {
+                    if (nowMillis - lastDeliveriesMillis[i] >= intervalsMillis[i]) {
+                        deliver(listeners, pendings, lastDeliveriesMillis, i, nowMillis);
+                    } else {
+                        pendings[i] = true;
+                        result |= NEEDS_THROTTLE_TIMER;
+                    }
+                    break;
+                }
+                default: {
+                    invoker.onProgressChanged(listenerAt(listeners, i), progress, fromUser);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delivers the latest value to the per frame listeners that are pending.
+     */
+    void dispatchFrame(long nowMillis) {
+        Object[] listeners = this.listeners;
+        int[] policies = this.policies;
+        long[] lastDeliveriesMillis = this.lastDeliveriesMillis;
+        boolean[] pendings = this.pendings;
+        for (int i = 0; i < listeners.length; i++) {
+            if (pendings[i] && policies[i] == DELIVERY_PER_FRAME) {
+                deliver(listeners, pendings, lastDeliveriesMillis, i, nowMillis);
+            }
+        }
+    }
+
+    /**
+     * Delivers the latest value to the throttled listeners whose interval has elapsed.
+     * @return Delay until the next throttled listener is due, or -1 if none is pending.
+     */
+    long dispatchThrottled(long nowMillis) {
+        Object[] listeners = this.listeners;
+        int[] policies = this.policies;
+        long[] intervalsMillis = this.intervalsMillis;
+        long[] lastDeliveriesMillis = this.lastDeliveriesMillis;
+        boolean[] pendings = this.pendings;
+        long nextDelay = -1;
+        for (int i = 0; i < listeners.length; i++) {
+            if (!pendings[i] || policies[i] != DELIVERY_THROTTLED) {
+                continue;
+            }
+            long delay = lastDeliveriesMillis[i] + intervalsMillis[i] - nowMillis;
+            if (delay <= 0) {
+                deliver(listeners, pendings, lastDeliveriesMillis, i, nowMillis);
+            } else if (nextDelay < 0 || delay < nextDelay) {
+                nextDelay = delay;
+            }
+        }
+        return nextDelay;
+    }
+
+    void dispatchTouchStart() {
+        Object[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            invoker.onTouchStart(listenerAt(listeners, i));
+        }
+    }
+
+    void dispatchTouchEnd() {
+        Object[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            invoker.onTouchEnd(listenerAt(listeners, i));
+        }
+    }
+
+    //endregion
+
+    //region Private
+
+    /**
+     * Delivers the latest value to the listener at index of the given snapshot. Snapshots are
+     * used so that listeners registering or removing listeners don't shift the indices.
+     */
+    private void deliver(Object[] listeners, boolean[] pendings, long[] lastDeliveriesMillis,
+                         int index, long nowMillis) {
+        pendings[index] = false;
+        lastDeliveriesMillis[index] = nowMillis;
+        invoker.onProgressChanged(listenerAt(listeners, index), latestProgress, latestFromUser);
+    }
+
+    /**
+     * Only listeners of type L are ever stored.
+     */
+    @SuppressWarnings("unchecked")
+    private L listenerAt(Object[] listeners, int index) {
+        return (L) listeners[index];
+    }
+
+    private int indexOf(L listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies source into destination, which is one element shorter, skipping index.
+     */
+    private static void removeAt(Object source, Object destination, int index, int size) {
+        System.arraycopy(source, 0, destination, 0, index);
+        System.arraycopy(source, index + 1, destination, index, size - index);
+    }
+
+    //endregion
+
+}
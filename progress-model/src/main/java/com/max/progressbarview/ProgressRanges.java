@@ -0,0 +1,238 @@
+package com.max.progressbarview;
+
+/**
+ * Sorted set of disjoint [start, end] progress intervals, stored in two primitive arrays.
+ * <p>
+ * Overlapping or touching intervals are merged on insertion and removal may split an interval.
+ * Both locate the affected intervals with a binary search, the only linear part left is the
+ * {@link System#arraycopy} that shifts the tail of the arrays.
+ * <p>
+ * The span of values affected by changes is accumulated until {@link #clearChangedSpan()} so
+ * that only that part of the bar has to be redrawn.
+ */
+final class ProgressRanges {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private float[] starts = new float[INITIAL_CAPACITY];
+    private float[] ends = new float[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private boolean changed = false;
+    private float changedStart;
+    private float changedEnd;
+
+    //region Getters
+
+    int size() {
+        return size;
+    }
+
+    float getStart(int index) {
+        return starts[index];
+    }
+
+    float getEnd(int index) {
+        return ends[index];
+    }
+
+    boolean hasChanged() {
+        return changed;
+    }
+
+    float getChangedStart() {
+        return changedStart;
+    }
+
+    float getChangedEnd() {
+        return changedEnd;
+    }
+
+    void clearChangedSpan() {
+        changed = false;
+    }
+
+    //endregion
+
+    //region Mutations
+
+    /**
+     * Adds [start, end], merging it with any interval it overlaps or touches.
+     */
+    void add(float start, float end) {
+        if (!(end > start)) {
+            return;
+        }
+        // First interval that ends at or after start, i.e. the first one that may merge
+        int first = firstEndingAtOrAfter(start);
+        // First interval that starts after end, i.e. the first one that can't merge
+        int last = firstStartingAfter(end);
+        if (first < last) {
+            start = Math.min(start, starts[first]);
+            end = Math.max(end, ends[last - 1]);
+        }
+        replace(first, last, 1);
+        starts[first] = start;
+        ends[first] = end;
+        includeChangedSpan(start, end);
+    }
+
+    /**
+     * Removes [start, end] from the set, trimming or splitting intervals as needed.
+     */
+    void remove(float start, float end) {
+        if (!(end > start)) {
+            return;
+        }
+        int first = firstEndingAfter(start);
+        int last = firstStartingAtOrAfter(end);
+        if (first >= last) {
+            return;
+        }
+        float headStart = starts[first];
+        float tailEnd = ends[last - 1];
+        boolean keepHead = headStart < start;
+        boolean keepTail = tailEnd > end;
+        int kept = (keepHead ? 1 : 0) + (keepTail ? 1 : 0);
+        replace(first, last, kept);
+        int index = first;
+        if (keepHead) {
+            starts[index] = headStart;
+            ends[index] = start;
+            index++;
+        }
+        if (keepTail) {
+            starts[index] = end;
+            ends[index] = tailEnd;
+        }
+        includeChangedSpan(start, end);
+    }
+
+    /**
+     * Replaces every interval with the single [start, end] one, or none if it's empty.
+     * <p>
+     * When it overlaps the single current interval, e.g. buffering growing tick after tick, only
+     * the values covered by one of the two intervals, not both, are marked as changed.
+     */
+    void set(float start, float end) {
+        if (size != 1 || !(end > start) || end < starts[0] || start > ends[0]) {
+            clear();
+            add(start, end);
+            return;
+        }
+        float oldStart = starts[0];
+        float oldEnd = ends[0];
+        starts[0] = start;
+        ends[0] = end;
+        if (start != oldStart) {
+            includeChangedSpan(Math.min(start, oldStart), Math.max(start, oldStart));
+        }
+        if (end != oldEnd) {
+            includeChangedSpan(Math.min(end, oldEnd), Math.max(end, oldEnd));
+        }
+    }
+
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        includeChangedSpan(starts[0], ends[size - 1]);
+        size = 0;
+    }
+
+    //endregion
+
+    //region Private
+
+    /**
+     * Replaces the intervals in [from, to) with count uninitialized slots.
+     */
+    private void replace(int from, int to, int count) {
+        int newSize = size - (to - from) + count;
+        if (newSize > starts.length) {
+            int capacity = Math.max(newSize, starts.length * 2);
+            float[] newStarts = new float[capacity];
+            float[] newEnds = new float[capacity];
+            System.arraycopy(starts, 0, newStarts, 0, from);
+            System.arraycopy(ends, 0, newEnds, 0, from);
+            System.arraycopy(starts, to, newStarts, from + count, size - to);
+            System.arraycopy(ends, to, newEnds, from + count, size - to);
+            starts = newStarts;
+            ends = newEnds;
+        } else {
+            System.arraycopy(starts, to, starts, from + count, size - to);
+            System.arraycopy(ends, to, ends, from + count, size - to);
+        }
+        size = newSize;
+    }
+
+    private int firstEndingAtOrAfter(float value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstEndingAfter(float value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstStartingAfter(float value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstStartingAtOrAfter(float value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void includeChangedSpan(float start, float end) {
+        if (!changed) {
+            changedStart = start;
+            changedEnd = end;
+            changed = true;
+        } else {
+            changedStart = Math.min(changedStart, start);
+            changedEnd = Math.max(changedEnd, end);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,155 @@
+package com.max.progressbarview;
+
+import java.util.Arrays;
+
+/**
+ * Thumbs of a range selection, such as an A/B loop or a trim range, as sorted values in a
+ * primitive array along with their pixel positions.
+ * <p>
+ * Values are sorted once when set. Moving a thumb clamps it between its neighbours, so they stay
+ * sorted without sorting again, and hit testing is a binary search over the positions. Arrays
+ * are only reallocated when the number of thumbs grows.
+ */
+final class RangeThumbs {
+
+    private double[] values = new double[0];
+
+    /**
+     * X of every thumb's center, snapped to whole pixels like the primary progress edge.
+     */
+    private float[] positions = new float[0];
+
+    private int count = 0;
+
+    //region Values
+
+    int size() {
+        return count;
+    }
+
+    double getValue(int index) {
+        return values[checkIndex(index)];
+    }
+
+    float getPosition(int index) {
+        return positions[checkIndex(index)];
+    }
+
+    /**
+     * @param values Thumb values in any order, copied and sorted.
+     */
+    void setValues(float[] values) {
+        int count = values.length;
+        if (this.values.length < count) {
+            this.values = new double[count];
+            this.positions = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            this.values[i] = values[i];
+        }
+        Arrays.sort(this.values, 0, count);
+        this.count = count;
+    }
+
+    /**
+     * Moves a thumb, clamped between its neighbours and the given bounds so the values stay
+     * sorted.
+     * @return The value the thumb was moved to.
+     */
+    double setValue(int index, double value, double minValue, double maxValue) {
+        checkIndex(index);
+        double lower = index > 0 ? values[index - 1] : minValue;
+        double upper = index < count - 1 ? values[index + 1] : maxValue;
+        value = value < lower ? lower : (value > upper ? upper : value);
+        values[index] = value;
+        return value;
+    }
+
+    //endregion
+
+    //region Positions
+
+    /**
+     * Recomputes every thumb's position, e.g. after a layout change.
+     */
+    void updatePositions(ProgressBarGeometry geometry) {
+        for (int i = 0; i < count; i++) {
+            positions[i] = Math.round(geometry.xOf(values[i]));
+        }
+    }
+
+    /**
+     * Recomputes the position of a single thumb after it moved.
+     * @return True if the thumb moved to another pixel.
+     */
+    boolean updatePosition(int index, ProgressBarGeometry geometry) {
+        float position = Math.round(geometry.xOf(values[checkIndex(index)]));
+        if (position == positions[index]) {
+            return false;
+        }
+        positions[index] = position;
+        return true;
+    }
+
+    /**
+     * Finds the thumb nearest to x with a binary search over the positions. Of thumbs sharing a
+     * position, a touch on their left picks the first one and a touch on their right the last.
+     * @param slop Farthest distance from a thumb's center that still hits it.
+     * @return Index of the hit thumb, -1 if none is within slop.
+     */
+    int hitTest(float x, float slop) {
+        // First thumb at or right of x
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int hit = -1;
+        float hitDistance = slop;
+        if (low < count && positions[low] - x <= hitDistance) {
+            hit = low;
+            hitDistance = positions[low] - x;
+        }
+        // Or the last thumb left of x, when strictly nearer
+        if (low > 0) {
+            float distance = x - positions[low - 1];
+            if (hit == -1 ? distance <= slop : distance < hitDistance) {
+                hit = low - 1;
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * Picks the thumb to drag among the ones sharing index's value, which can't pass each
+     * other: the last one to move towards the end, the first one otherwise.
+     */
+    int pickAmongEqual(int index, boolean towardsEnd) {
+        double value = values[checkIndex(index)];
+        if (towardsEnd) {
+            while (index < count - 1 && values[index + 1] == value) {
+                index++;
+            }
+        } else {
+            while (index > 0 && values[index - 1] == value) {
+                index--;
+            }
+        }
+        return index;
+    }
+
+    //endregion
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + ", thumb count " + count);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,354 @@
+package com.max.progressbarview;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads preview frames for scrub positions, such as video thumbnails shown above the thumb while
+ * the user drags it.
+ * <p>
+ * Positions are quantized into buckets of {@code bucketSize} progress units, and frames are kept
+ * in a size bounded LRU cache keyed by bucket. Every request also prefetches buckets ahead in the
+ * direction of the drag, further the faster the drag. Loads run on a background executor and
+ * loads whose bucket fell out of the latest request's window are dropped before they start, so a
+ * fast scrub never piles up decode work.
+ * <p>
+ * Requests come on every drag move, so the cache is keyed by primitive ints in parallel arrays
+ * and every load reuses a {@link Runnable} from a pool: once warmed up, scrubbing doesn't
+ * allocate besides the frames themselves.
+ * <p>
+ * All methods but {@link FrameProvider#loadFrame(float)} are called on the callback executor's
+ * thread, which is the UI thread for {@code ProgressBarView}.
+ *
+ * @param <F> Type of the frames, e.g. Bitmap.
+ */
+public final class ScrubPreviewLoader<F> {
+
+    public interface FrameProvider<F> {
+
+        /**
+         * Loads the frame for a position. Called on the background executor.
+         * @param position  Start of the bucket, in progress units.
+         * @return          The frame, or null if there isn't one.
+         */
+        F loadFrame(float position);
+
+    }
+
+    public interface FrameSizer<F> {
+
+        /**
+         * @return Size of frame in the unit used by the cache's max size, e.g. bytes.
+         */
+        int sizeOf(F frame);
+
+    }
+
+    public interface Callback<F> {
+
+        /**
+         * Fires when the frame of the last requested position is available.
+         * @param position  Start of the bucket, in progress units.
+         * @param frame     The frame.
+         */
+        void onFrameLoaded(float position, F frame);
+
+    }
+
+    /**
+     * How far ahead, in seconds of drag at the current velocity, frames are prefetched.
+     */
+    private static final float PREFETCH_LOOKAHEAD_SECONDS = 0.5f;
+
+    private static final int DEFAULT_MAX_PREFETCH = 4;
+
+    private static final int INITIAL_CACHE_CAPACITY = 16;
+
+    private final FrameProvider<F> frameProvider;
+    private final FrameSizer<F> frameSizer;
+    private final Executor backgroundExecutor;
+    private final Executor callbackExecutor;
+    private final Callback<F> callback;
+
+    private final float bucketSize;
+    private final int maxCacheSize;
+    private int maxPrefetch = DEFAULT_MAX_PREFETCH;
+
+    /**
+     * Cached buckets and their frames, from the least to the most recently used. A cache holds
+     * tens of frames, which a linear scan of an int array finds faster than hashing would.
+     */
+    private int[] cachedBuckets = new int[INITIAL_CACHE_CAPACITY];
+    private Object[] cachedFrames = new Object[INITIAL_CACHE_CAPACITY];
+    private int cachedCount = 0;
+    private int cacheSize = 0;
+
+    /**
+     * Every load ever started, reused once its frame has been delivered.
+     */
+    private final ArrayList<Load> loads = new ArrayList<Load>();
+
+    /**
+     * Window of buckets wanted by the latest request, packed as (from << 32 | to). Read by the
+     * background executor to drop loads that became stale.
+     */
+    private final AtomicLong wantedBuckets = new AtomicLong(NOTHING_WANTED);
+
+    private static final long NOTHING_WANTED = pack(1, 0);
+
+    private int requestedBucket = Integer.MIN_VALUE;
+
+    /**
+     * @param frameProvider         Loads frames, on the background executor.
+     * @param frameSizer            Measures frames for the cache.
+     * @param maxCacheSize          Max sum of frame sizes kept in the cache.
+     * @param bucketSize            Positions closer than this share a frame, in progress units.
+     * @param backgroundExecutor    Runs loads.
+     * @param callbackExecutor      Delivers loaded frames, the thread the loader is used from.
+     * @param callback              Receives the frames of requested positions.
+     */
+    public ScrubPreviewLoader(FrameProvider<F> frameProvider, FrameSizer<F> frameSizer,
+                              int maxCacheSize, float bucketSize, Executor backgroundExecutor,
+                              Executor callbackExecutor, Callback<F> callback) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("bucketSize must be positive");
+        }
+        this.frameProvider = frameProvider;
+        this.frameSizer = frameSizer;
+        this.maxCacheSize = maxCacheSize;
+        this.bucketSize = bucketSize;
+        this.backgroundExecutor = backgroundExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.callback = callback;
+    }
+
+    /**
+     * @param maxPrefetch Max number of buckets prefetched ahead of a request.
+     */
+    public void setMaxPrefetch(int maxPrefetch) {
+        this.maxPrefetch = maxPrefetch;
+    }
+
+    /**
+     * Requests the frame for position. A cached frame is delivered synchronously, otherwise it's
+     * loaded and delivered unless another position was requested in the meantime.
+     * @param position  Scrub position, in progress units.
+     * @param velocity  Scrub velocity, in progress units per second.
+     */
+    public void request(float position, float velocity) {
+        int bucket = bucketOf(position);
+        int prefetch = 0;
+        if (velocity != 0) {
+            prefetch = Math.min(maxPrefetch,
+                    (int) Math.ceil(Math.abs(velocity) * PREFETCH_LOOKAHEAD_SECONDS / bucketSize));
+        }
+        int direction = velocity > 0 ? 1 : -1;
+        wantedBuckets.set(direction > 0 ? pack(bucket, bucket + prefetch) : pack(bucket - prefetch, bucket));
+        boolean bucketChanged = bucket != requestedBucket;
+        requestedBucket = bucket;
+
+        int index = indexOfCached(bucket);
+        if (index < 0) {
+            load(bucket);
+        } else {
+            F frame = touchCached(index);
+            if (bucketChanged) {
+                callback.onFrameLoaded(positionOf(bucket), frame);
+            }
+        }
+        for (int i = 1; i <= prefetch; i++) {
+            int prefetchBucket = bucket + direction * i;
+            if (indexOfCached(prefetchBucket) < 0) {
+                load(prefetchBucket);
+            }
+        }
+    }
+
+    /**
+     * Drops every load that hasn't started yet, e.g. when the drag ends.
+     */
+    public void cancel() {
+        wantedBuckets.set(NOTHING_WANTED);
+        requestedBucket = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Cancels pending loads and empties the cache.
+     */
+    public void clear() {
+        cancel();
+        for (int i = 0; i < cachedCount; i++) {
+            cachedFrames[i] = null;
+        }
+        cachedCount = 0;
+        cacheSize = 0;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return Start of the bucket that contains position.
+     */
+    public float quantize(float position) {
+        return positionOf(bucketOf(position));
+    }
+
+    //region Private
+
+    private int bucketOf(float position) {
+        return (int) Math.floor(position / bucketSize);
+    }
+
+    private float positionOf(int bucket) {
+        return bucket * bucketSize;
+    }
+
+    private static long pack(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    private boolean isWanted(int bucket) {
+        long wanted = wantedBuckets.get();
+        return bucket >= (int) (wanted >> 32) && bucket <= (int) wanted;
+    }
+
+    private void load(int bucket) {
+        Load free = null;
+        for (int i = 0, size = loads.size(); i < size; i++) {
+            Load load = loads.get(i);
+            if (load.inFlight && load.bucket == bucket) {
+                return;
+            }
+            if (!load.inFlight && free == null) {
+                free = load;
+            }
+        }
+        if (free == null) {
+            free = new Load();
+            loads.add(free);
+        }
+        free.start(bucket);
+        backgroundExecutor.execute(free);
+    }
+
+    private void onLoaded(int bucket, F frame) {
+        if (frame == null) {
+            return;
+        }
+        put(bucket, frame);
+        if (bucket == requestedBucket) {
+            callback.onFrameLoaded(positionOf(bucket), frame);
+        }
+    }
+
+    private int indexOfCached(int bucket) {
+        for (int i = cachedCount - 1; i >= 0; i--) {
+            if (cachedBuckets[i] == bucket) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the cached frame at index to the most recently used end.
+     * @return The frame.
+     */
+    @SuppressWarnings("unchecked")
+    private F touchCached(int index) {
+        int bucket = cachedBuckets[index];
+        Object frame = cachedFrames[index];
+        int last = cachedCount - 1;
+        System.arraycopy(cachedBuckets, index + 1, cachedBuckets, index, last - index);
+        System.arraycopy(cachedFrames, index + 1, cachedFrames, index, last - index);
+        cachedBuckets[last] = bucket;
+        cachedFrames[last] = frame;
+        return (F) frame;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(int bucket, F frame) {
+        int index = indexOfCached(bucket);
+        if (index >= 0) {
+            cacheSize -= frameSizer.sizeOf((F) cachedFrames[index]);
+            cachedFrames[index] = frame;
+            touchCached(index);
+        } else {
+            if (cachedCount == cachedBuckets.length) {
+                int capacity = cachedCount * 2;
+                int[] buckets = new int[capacity];
+                Object[] frames = new Object[capacity];
+                System.arraycopy(cachedBuckets, 0, buckets, 0, cachedCount);
+                System.arraycopy(cachedFrames, 0, frames, 0, cachedCount);
+                cachedBuckets = buckets;
+                cachedFrames = frames;
+            }
+            cachedBuckets[cachedCount] = bucket;
+            cachedFrames[cachedCount] = frame;
+            cachedCount++;
+        }
+        cacheSize += frameSizer.sizeOf(frame);
+        // Evicts the least recently used frames, but never the one just put
+        int evicted = 0;
+        while (cacheSize > maxCacheSize && evicted < cachedCount - 1) {
+            cacheSize -= frameSizer.sizeOf((F) cachedFrames[evicted]);
+            evicted++;
+        }
+        if (evicted > 0) {
+            int kept = cachedCount - evicted;
+            System.arraycopy(cachedBuckets, evicted, cachedBuckets, 0, kept);
+            System.arraycopy(cachedFrames, evicted, cachedFrames, 0, kept);
+            for (int i = kept; i < cachedCount; i++) {
+                cachedFrames[i] = null;
+            }
+            cachedCount = kept;
+        }
+    }
+
+    /**
+     * Load of a bucket, run first on the background executor to load the frame, then on the
+     * callback executor to deliver it. Handing it over between executors publishes its fields.
+     */
+    private final class Load implements Runnable {
+
+        /**
+         * True from the start of the load until its frame is delivered, only accessed on the
+         * callback executor's thread.
+         */
+        boolean inFlight;
+
+        int bucket;
+
+        private F frame;
+        private boolean loaded;
+
+        void start(int bucket) {
+            this.inFlight = true;
+            this.bucket = bucket;
+            this.frame = null;
+            this.loaded = false;
+        }
+
+        @Override
+        public void run() {
+            if (!loaded) {
+                // Newer requests may have moved away while this load was queued
+                frame = isWanted(bucket) ? frameProvider.loadFrame(positionOf(bucket)) : null;
+                loaded = true;
+                callbackExecutor.execute(this);
+            } else {
+                F frame = this.frame;
+                this.frame = null;
+                this.inFlight = false;
+                onLoaded(bucket, frame);
+            }
+        }
+
+    }
+
+    //endregion
+
+}
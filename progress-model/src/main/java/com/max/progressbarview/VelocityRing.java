@@ -0,0 +1,77 @@
+package com.max.progressbarview;
+
+/**
+ * Fixed size ring buffer of (x, time) touch samples that estimates horizontal velocity without
+ * allocating, as opposed to {@code android.view.VelocityTracker} which has to be obtained and
+ * recycled.
+ */
+final class VelocityRing {
+
+    private static final int CAPACITY = 16;
+
+    /**
+     * Only samples this recent are used, older ones describe a previous motion.
+     */
+    private static final long HORIZON_MILLIS = 100;
+
+    private final float[] positions = new float[CAPACITY];
+    private final long[] timesMillis = new long[CAPACITY];
+
+    /**
+     * Index of the newest sample.
+     */
+    private int head = -1;
+    private int count = 0;
+
+    void clear() {
+        head = -1;
+        count = 0;
+    }
+
+    void add(float x, long timeMillis) {
+        head = (head + 1) % CAPACITY;
+        positions[head] = x;
+        timesMillis[head] = timeMillis;
+        if (count < CAPACITY) {
+            count++;
+        }
+    }
+
+    /**
+     * Least squares slope of position over time for the samples within the horizon.
+     * @return Velocity in pixels per second, 0 if there aren't enough samples.
+     */
+    float computeVelocity() {
+        if (count < 2) {
+            return 0;
+        }
+        long newestTime = timesMillis[head];
+        // Times are relative to the newest sample to keep the sums small
+        double sumT = 0;
+        double sumX = 0;
+        double sumTT = 0;
+        double sumTX = 0;
+        int samples = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (head - i + CAPACITY) % CAPACITY;
+            long age = newestTime - timesMillis[index];
+            if (age > HORIZON_MILLIS) {
+                break;
+            }
+            double t = -age;
+            double x = positions[index];
+            sumT += t;
+            sumX += x;
+            sumTT += t * t;
+            sumTX += t * x;
+            samples++;
+        }
+        double denominator = samples * sumTT - sumT * sumT;
+        if (samples < 2 || denominator == 0) {
+            return 0;
+        }
+        double pixelsPerMilli = (samples * sumTX - sumT * sumX) / denominator;
+        return (float) (pixelsPerMilli * 1000);
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.max.progressbarview;
+
+/**
+ * Multi-resolution min/max summary of a sample array, such as an audio waveform or a heatmap.
+ * <p>
+ * Level 0 holds the samples and every next level holds the min and max of pairs of entries of
+ * the previous one, so it's half its size. Resampling to a number of pixel columns reads the
+ * coarsest level that still has at least one entry per column, which makes it O(columns) no
+ * matter how many samples there are.
+ * <p>
+ * Appending only recomputes the tail entries of each level that the new samples affect, so live
+ * streams never rebuild the whole pyramid. Not thread safe, a pyramid can be built on a
+ * background thread and handed over to the UI thread once complete.
+ */
+final class WaveformPyramid {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Per level minimums. Level 0 shares the same array with maxs, as a sample is its own min
+     * and max.
+     */
+    private float[][] mins = new float[1][];
+    private float[][] maxs = new float[1][];
+    private int[] sizes = new int[1];
+    private int levelCount = 1;
+
+    WaveformPyramid() {
+        mins[0] = new float[INITIAL_CAPACITY];
+        maxs[0] = mins[0];
+    }
+
+    /**
+     * Builds a pyramid of samples in O(count).
+     */
+    static WaveformPyramid build(float[] samples, int offset, int count) {
+        WaveformPyramid pyramid = new WaveformPyramid();
+        pyramid.append(samples, offset, count);
+        return pyramid;
+    }
+
+    //region Getters
+
+    /**
+     * @return Number of samples.
+     */
+    int size() {
+        return sizes[0];
+    }
+
+    int getLevelCount() {
+        return levelCount;
+    }
+
+    int getLevelSize(int level) {
+        return sizes[level];
+    }
+
+    float getMin(int level, int index) {
+        return mins[level][index];
+    }
+
+    float getMax(int level, int index) {
+        return maxs[level][index];
+    }
+
+    //endregion
+
+    /**
+     * Appends samples, recomputing only the entries of each level that cover them.
+     */
+    void append(float[] samples, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        int previousSize = sizes[0];
+        ensureCapacity(0, previousSize + count);
+        System.arraycopy(samples, offset, mins[0], previousSize, count);
+        sizes[0] = previousSize + count;
+
+        // First entry of the previous level that changed
+        int changedFrom = previousSize;
+        for (int level = 1; sizes[level - 1] > 1; level++) {
+            if (level == levelCount) {
+                addLevel();
+            }
+            int below = level - 1;
+            int belowSize = sizes[below];
+            int size = (belowSize + 1) / 2;
+            ensureCapacity(level, size);
+            float[] belowMins = mins[below];
+            float[] belowMaxs = maxs[below];
+            float[] levelMins = mins[level];
+            float[] levelMaxs = maxs[level];
+            // An odd tail entry of the level below may have got its pair, so start from its parent
+            int from = changedFrom / 2;
+            for (int i = from; i < size; i++) {
+                int first = i * 2;
+                int second = first + 1 < belowSize ? first + 1 : first;
+                levelMins[i] = Math.min(belowMins[first], belowMins[second]);
+                levelMaxs[i] = Math.max(belowMaxs[first], belowMaxs[second]);
+            }
+            sizes[level] = size;
+            changedFrom = from;
+        }
+    }
+
+    /**
+     * Reduces the samples to columns entries, each the min and max of the samples it covers.
+     * @return Number of columns written, 0 when there are no samples.
+     */
+    int resample(int columns, float[] outMins, float[] outMaxs) {
+        int sampleCount = sizes[0];
+        if (sampleCount == 0 || columns <= 0) {
+            return 0;
+        }
+        // Coarsest level with at least one entry per column
+        int level = 0;
+        while (level + 1 < levelCount && sizes[level + 1] >= columns) {
+            level++;
+        }
+        int size = sizes[level];
+        float[] levelMins = mins[level];
+        float[] levelMaxs = maxs[level];
+        for (int column = 0; column < columns; column++) {
+            int from = (int) ((long) column * size / columns);
+            int to = Math.max(from + 1, (int) ((long) (column + 1) * size / columns));
+            float min = levelMins[from];
+            float max = levelMaxs[from];
+            for (int i = from + 1; i < to; i++) {
+                min = Math.min(min, levelMins[i]);
+                max = Math.max(max, levelMaxs[i]);
+            }
+            outMins[column] = min;
+            outMaxs[column] = max;
+        }
+        return columns;
+    }
+
+    //region Private
+
+    private void addLevel() {
+        if (levelCount == sizes.length) {
+            int capacity = levelCount * 2;
+            float[][] newMins = new float[capacity][];
+            float[][] newMaxs = new float[capacity][];
+            int[] newSizes = new int[capacity];
+            System.arraycopy(mins, 0, newMins, 0, levelCount);
+            System.arraycopy(maxs, 0, newMaxs, 0, levelCount);
+            System.arraycopy(sizes, 0, newSizes, 0, levelCount);
+            mins = newMins;
+            maxs = newMaxs;
+            sizes = newSizes;
+        }
+        mins[levelCount] = new float[0];
+        maxs[levelCount] = new float[0];
+        levelCount++;
+    }
+
+    private void ensureCapacity(int level, int capacity) {
+        float[] levelMins = mins[level];
+        if (levelMins.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, levelMins.length * 2));
+        float[] newMins = new float[newCapacity];
+        System.arraycopy(levelMins, 0, newMins, 0, sizes[level]);
+        mins[level] = newMins;
+        if (level == 0) {
+            maxs[0] = newMins;
+        } else {
+            float[] newMaxs = new float[newCapacity];
+            System.arraycopy(maxs[level], 0, newMaxs, 0, sizes[level]);
+            maxs[level] = newMaxs;
+        }
+    }
+
+    //endregion
+
+}
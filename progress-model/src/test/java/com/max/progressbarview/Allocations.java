@@ -0,0 +1,73 @@
+package com.max.progressbarview;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the test thread, for tests of allocation free code paths. Tests
+ * using it are skipped on JVMs that can't count allocations per thread.
+ */
+final class Allocations {
+
+    /**
+     * Number of times a loop is measured. Only the fewest allocations count, so that a one-off
+     * allocation by the JVM itself, e.g. when it deoptimizes a method, doesn't fail a test.
+     */
+    private static final int RUNS = 3;
+
+    interface Loop {
+        void run(int iteration);
+    }
+
+    private Allocations() {
+    }
+
+    /**
+     * Runs loop warmUpIterations times, so that class loading and JIT don't count, then measures
+     * it over iterations.
+     * @return Fewest bytes allocated by iterations of loop over several runs.
+     */
+    static long measure(int warmUpIterations, int iterations, Loop loop) {
+        for (int i = 0; i < warmUpIterations; i++) {
+            loop.run(i);
+        }
+        long overhead = allocatedBytes();
+        overhead = allocatedBytes() - overhead;
+
+        long fewest = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS && fewest > 0; run++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < iterations; i++) {
+                loop.run(i);
+            }
+            fewest = Math.min(fewest, allocatedBytes() - before - overhead);
+        }
+        return fewest;
+    }
+
+    /**
+     * @return Bytes allocated by the current thread so far. Skips the calling test if the JVM
+     * can't tell.
+     */
+    static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        boolean supported;
+        try {
+            supported = threadMXBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threadMXBean)
+                    .isThreadAllocatedMemorySupported();
+        } catch (NoClassDefFoundError e) {
+            supported = false;
+        }
+        Assume.assumeTrue("Thread allocation counting isn't supported", supported);
+        com.sun.management.ThreadMXBean allocations =
+                (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocations.isThreadAllocatedMemoryEnabled()) {
+            allocations.setThreadAllocatedMemoryEnabled(true);
+        }
+        return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.max.progressbarview;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link PendingProgress}.
+ */
+public class PendingProgressTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void publish_requestsDrainOnlyOnce() {
+        PendingProgress pendingProgress = new PendingProgress();
+
+        assertTrue(pendingProgress.publishPrimary(1));
+        assertFalse(pendingProgress.publishPrimary(2));
+        assertFalse(pendingProgress.publishSecondary(3));
+
+        assertEquals(PendingProgress.PRIMARY | PendingProgress.SECONDARY, pendingProgress.drain());
+        assertEquals(2, pendingProgress.getPrimary(), DELTA);
+        assertEquals(3, pendingProgress.getSecondary(), DELTA);
+
+        assertEquals(0, pendingProgress.drain());
+        assertTrue(pendingProgress.publishSecondary(4));
+    }
+
+    @Test
+    public void publish_keepsLongValuesExact() {
+        PendingProgress pendingProgress = new PendingProgress();
+        long position = (1L << 40) + 1;
+
+        pendingProgress.publishPrimary(position);
+        pendingProgress.drain();
+
+        assertEquals(position, (long) pendingProgress.getPrimary());
+    }
+
+    @Test
+    public void publish_fromManyThreadsNeverLosesTheLastValue() throws InterruptedException {
+        final PendingProgress pendingProgress = new PendingProgress();
+        final AtomicInteger drainRequests = new AtomicInteger();
+        final int threads = 4;
+        final int values = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < values; i++) {
+                        if (pendingProgress.publishPrimary(i)) {
+                            drainRequests.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        int drained = 0;
+        while (done.getCount() > 0) {
+            drained += pendingProgress.drain() != 0 ? 1 : 0;
+        }
+        done.await();
+        drained += pendingProgress.drain() != 0 ? 1 : 0;
+
+        assertEquals(drainRequests.get(), drained);
+        assertEquals(values - 1, pendingProgress.getPrimary(), DELTA);
+    }
+
+}
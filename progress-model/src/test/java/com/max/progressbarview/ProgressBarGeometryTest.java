@@ -0,0 +1,177 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link ProgressBarGeometry}.
+ */
+public class ProgressBarGeometryTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private ProgressBarGeometry geometry;
+
+    @Before
+    public void setUp() {
+        geometry = new ProgressBarGeometry();
+        geometry.setLayout(1100, 100, 50, 50);
+        geometry.setMaxProgressValue(100);
+        geometry.setThumbSize(20);
+        geometry.update();
+    }
+
+    @Test
+    public void minProgressValue_mapsToLeftEdge() {
+        geometry.setMinProgressValue(-100);
+        geometry.setPrimaryProgressValue(0);
+        geometry.update();
+
+        assertEquals(50, geometry.xOf(-100), DELTA);
+        assertEquals(1050, geometry.xOf(100), DELTA);
+        assertEquals(550, geometry.getPrimaryProgressRightEdge(), DELTA);
+        assertEquals(50, geometry.valueAt(800), DELTA);
+        assertEquals(-100, geometry.valueAt(geometry.getLeftEdge()), DELTA);
+    }
+
+    @Test
+    public void update_reportsPartsRecomputedByConversions() {
+        geometry.setPrimaryProgressValue(50);
+        geometry.invalidateSecondaryProgress(0, 10);
+
+        assertEquals(550, geometry.xOf(50), DELTA);
+        geometry.valueAt(300);
+
+        assertEquals(ProgressBarGeometry.DIRTY_PRIMARY | ProgressBarGeometry.DIRTY_SECONDARY
+                | ProgressBarGeometry.DIRTY_THUMB, geometry.update());
+        assertEquals(0, geometry.update());
+    }
+
+    @Test
+    public void update_computesEdges() {
+        geometry.setPrimaryProgressValue(25);
+        geometry.update();
+
+        assertEquals(50, geometry.getLeftEdge(), DELTA);
+        assertEquals(1050, geometry.getRightEdge(), DELTA);
+        assertEquals(300, geometry.getPrimaryProgressRightEdge(), DELTA);
+        assertEquals(550, geometry.xOf(50), DELTA);
+        assertEquals(290, geometry.getThumbLeftEdge(), DELTA);
+        assertEquals(40, geometry.getThumbTopEdge(), DELTA);
+    }
+
+    @Test
+    public void update_recomputesOnlyDirtyParts() {
+        geometry.invalidateSecondaryProgress(0, 10);
+        assertEquals(ProgressBarGeometry.DIRTY_SECONDARY, geometry.update());
+
+        geometry.setPrimaryProgressValue(10);
+        assertEquals(ProgressBarGeometry.DIRTY_PRIMARY | ProgressBarGeometry.DIRTY_THUMB,
+                geometry.update());
+
+        geometry.setPrimaryProgressValue(10);
+        assertEquals(0, geometry.update());
+    }
+
+    @Test
+    public void update_accumulatesDirtyRegionOfMovedParts() {
+        geometry.setPrimaryProgressValue(10);
+        geometry.update();
+        geometry.clearDirtyRegion();
+
+        geometry.setPrimaryProgressValue(20);
+        geometry.update();
+
+        assertFalse(geometry.needsFullInvalidation());
+        assertEquals(140, geometry.getDirtyLeft(), DELTA);
+        assertEquals(260, geometry.getDirtyRight(), DELTA);
+        assertEquals(40, geometry.getDirtyTop(), DELTA);
+        assertEquals(60, geometry.getDirtyBottom(), DELTA);
+
+        geometry.clearDirtyRegion();
+        geometry.invalidateSecondaryProgress(70, 80);
+        geometry.invalidateSecondaryProgress(60, 65);
+        geometry.update();
+        assertEquals(650, geometry.getDirtyLeft(), DELTA);
+        assertEquals(850, geometry.getDirtyRight(), DELTA);
+
+        geometry.clearDirtyRegion();
+        geometry.setLayout(1000, 100, 0, 0);
+        geometry.update();
+        assertTrue(geometry.needsFullInvalidation());
+    }
+
+    @Test
+    public void update_subPixelChange_leavesDirtyRegionEmpty() {
+        // 2 hours in seconds on 1000 pixels, 7.2 seconds per pixel
+        geometry.setMaxProgressValue(7200);
+        geometry.setPrimaryProgressValue(3600);
+        geometry.update();
+        geometry.clearDirtyRegion();
+
+        geometry.setPrimaryProgressValue(3601);
+        assertTrue(geometry.update() != 0);
+        assertTrue(geometry.isDirtyRegionEmpty());
+
+        geometry.setPrimaryProgressValue(3610);
+        geometry.update();
+        assertFalse(geometry.isDirtyRegionEmpty());
+        assertEquals(551, geometry.getPrimaryProgressRightEdge(), DELTA);
+    }
+
+    @Test
+    public void update_mapsLargeLongValuesExactly() {
+        // 10 GB in bytes, where a float step is 1 KB
+        long max = 10L * 1024 * 1024 * 1024;
+        geometry.setMaxProgressValue(max);
+        geometry.setPrimaryProgressValue(max / 2 + 1);
+        geometry.update();
+        assertEquals(550, geometry.getPrimaryProgressRightEdge(), DELTA);
+
+        geometry.setPrimaryProgressValue(max - 1);
+        geometry.update();
+        assertEquals(1050, geometry.getPrimaryProgressRightEdge(), DELTA);
+        assertEquals(max - 1, geometry.valueAt(geometry.xOf(max - 1)), 1);
+    }
+
+    @Test
+    public void thumb_snapsToPrimaryProgressWhileDragging() {
+        geometry.setThumbSnapValue(5);
+        geometry.setPrimaryProgressValue(50);
+        geometry.setDragging(true, geometry.xOf(53));
+        geometry.update();
+        assertEquals(geometry.getPrimaryProgressRightEdge(), geometry.getThumbCenterX(), DELTA);
+
+        geometry.setDragging(true, geometry.xOf(60));
+        geometry.update();
+        assertEquals(geometry.xOf(60), geometry.getThumbCenterX(), DELTA);
+    }
+
+    @Test
+    public void update_doesNotAllocateInSteadyState() {
+        long allocated = Allocations.measure(20000, 20000, new Allocations.Loop() {
+            @Override
+            public void run(int iteration) {
+                frame(iteration);
+            }
+        });
+
+        assertEquals(0, allocated);
+    }
+
+    /**
+     * Simulates what a drag frame does: move the touch, update progress and recompute.
+     */
+    private void frame(int i) {
+        float x = geometry.clampX(i % 1200);
+        geometry.setDragging(true, x);
+        geometry.setPrimaryProgressValue(geometry.valueAt(x));
+        geometry.invalidateSecondaryProgress(i % 100, i % 100 + 1);
+        geometry.update();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link ProgressListenerDispatcher}.
+ */
+public class ProgressListenerDispatcherTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private ProgressListenerDispatcher<RecordingListener> dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new ProgressListenerDispatcher<>(
+                new ProgressListenerDispatcher.Invoker<RecordingListener>() {
+                    @Override
+                    public void onProgressChanged(RecordingListener listener, double progress,
+                                                  boolean fromUser) {
+                        listener.onProgressChanged(progress);
+                    }
+
+                    @Override
+                    public void onTouchStart(RecordingListener listener) {
+                        listener.touches++;
+                    }
+
+                    @Override
+                    public void onTouchEnd(RecordingListener listener) {
+                        listener.touches--;
+                    }
+                });
+    }
+
+    @Test
+    public void perFrameListener_receivesLatestValueOnce() {
+        RecordingListener listener = new RecordingListener();
+        dispatcher.add(listener, ProgressListenerDispatcher.DELIVERY_PER_FRAME, 0);
+
+        int needs = dispatcher.dispatchProgressChanged(1, false, 0);
+        dispatcher.dispatchProgressChanged(2, true, 0);
+        assertEquals(ProgressListenerDispatcher.NEEDS_FRAME, needs);
+        assertEquals(0, listener.count);
+
+        dispatcher.dispatchFrame(16);
+        dispatcher.dispatchFrame(32);
+        assertEquals(1, listener.count);
+        assertEquals(2, listener.progress, DELTA);
+    }
+
+    @Test
+    public void throttledListener_isDeliveredAtMostOncePerInterval() {
+        RecordingListener listener = new RecordingListener();
+        dispatcher.add(listener, ProgressListenerDispatcher.DELIVERY_THROTTLED, 100);
+
+        dispatcher.dispatchProgressChanged(1, false, 1000);
+        int needs = dispatcher.dispatchProgressChanged(2, false, 1010);
+        dispatcher.dispatchProgressChanged(3, false, 1020);
+        assertEquals(ProgressListenerDispatcher.NEEDS_THROTTLE_TIMER, needs);
+        assertEquals(1, listener.count);
+
+        assertEquals(50, dispatcher.dispatchThrottled(1050));
+        assertEquals(-1, dispatcher.dispatchThrottled(1100));
+        assertEquals(2, listener.count);
+        assertEquals(3, listener.progress, DELTA);
+    }
+
+    @Test
+    public void listener_canRemoveItselfWhileDispatching() {
+        final RecordingListener other = new RecordingListener();
+        RecordingListener selfRemoving = new RecordingListener() {
+            @Override
+            void onProgressChanged(double progress) {
+                super.onProgressChanged(progress);
+                dispatcher.remove(this);
+            }
+        };
+        dispatcher.add(selfRemoving, ProgressListenerDispatcher.DELIVERY_IMMEDIATE, 0);
+        dispatcher.add(other, ProgressListenerDispatcher.DELIVERY_IMMEDIATE, 0);
+
+        dispatcher.dispatchProgressChanged(1, false, 0);
+        dispatcher.dispatchProgressChanged(2, false, 0);
+
+        assertEquals(1, selfRemoving.count);
+        assertEquals(2, other.count);
+        assertEquals(1, dispatcher.size());
+    }
+
+    @Test
+    public void touchEvents_reachEveryListener() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        dispatcher.add(first, ProgressListenerDispatcher.DELIVERY_IMMEDIATE, 0);
+        dispatcher.add(second, ProgressListenerDispatcher.DELIVERY_THROTTLED, 100);
+
+        dispatcher.dispatchTouchStart();
+        assertEquals(1, first.touches);
+        assertEquals(1, second.touches);
+
+        dispatcher.dispatchTouchEnd();
+        assertEquals(0, first.touches);
+        assertEquals(0, second.touches);
+    }
+
+    private static class RecordingListener {
+
+        int count;
+        double progress;
+        int touches;
+
+        void onProgressChanged(double progress) {
+            this.count++;
+            this.progress = progress;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Local unit tests for {@link ProgressRanges}.
+ */
+public class ProgressRangesTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private ProgressRanges ranges;
+
+    @Before
+    public void setUp() {
+        ranges = new ProgressRanges();
+    }
+
+    @Test
+    public void add_keepsRangesSortedAndDisjoint() {
+        ranges.add(50, 60);
+        ranges.add(10, 20);
+        ranges.add(30, 40);
+        ranges.add(70, 80);
+        ranges.add(90, 95);
+
+        assertRanges(10, 20, 30, 40, 50, 60, 70, 80, 90, 95);
+    }
+
+    @Test
+    public void add_mergesOverlappingAndTouchingRanges() {
+        ranges.add(10, 20);
+        ranges.add(30, 40);
+        ranges.add(50, 60);
+
+        ranges.add(15, 30);
+        assertRanges(10, 40, 50, 60);
+
+        ranges.add(0, 100);
+        assertRanges(0, 100);
+    }
+
+    @Test
+    public void remove_trimsAndSplitsRanges() {
+        ranges.add(0, 100);
+
+        ranges.remove(40, 60);
+        assertRanges(0, 40, 60, 100);
+
+        ranges.remove(30, 70);
+        assertRanges(0, 30, 70, 100);
+
+        ranges.remove(-10, 200);
+        assertRanges();
+    }
+
+    @Test
+    public void changedSpan_coversOnlyTouchedValues() {
+        ranges.add(0, 10);
+        ranges.add(50, 60);
+        ranges.clearChangedSpan();
+
+        ranges.add(20, 30);
+        ranges.remove(55, 58);
+
+        assertEquals(20, ranges.getChangedStart(), DELTA);
+        assertEquals(58, ranges.getChangedEnd(), DELTA);
+
+        ranges.clearChangedSpan();
+        ranges.add(21, 29);
+        assertRanges(0, 10, 20, 30, 50, 55, 58, 60);
+        ranges.clearChangedSpan();
+        ranges.set(0, 10);
+        ranges.clearChangedSpan();
+        ranges.set(0, 10);
+        assertFalse(ranges.hasChanged());
+    }
+
+    @Test
+    public void set_overlappingInterval_changesOnlyTheDifference() {
+        ranges.set(0, 10);
+        ranges.clearChangedSpan();
+
+        ranges.set(0, 12);
+
+        assertRanges(0, 12);
+        assertEquals(10, ranges.getChangedStart(), DELTA);
+        assertEquals(12, ranges.getChangedEnd(), DELTA);
+
+        ranges.clearChangedSpan();
+        ranges.set(5, 12);
+        assertRanges(5, 12);
+        assertEquals(0, ranges.getChangedStart(), DELTA);
+        assertEquals(5, ranges.getChangedEnd(), DELTA);
+
+        ranges.clearChangedSpan();
+        ranges.set(20, 30);
+        assertRanges(20, 30);
+        assertEquals(5, ranges.getChangedStart(), DELTA);
+        assertEquals(30, ranges.getChangedEnd(), DELTA);
+    }
+
+    private void assertRanges(float... bounds) {
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(bounds[i * 2], ranges.getStart(i), DELTA);
+            assertEquals(bounds[i * 2 + 1], ranges.getEnd(i), DELTA);
+        }
+    }
+
+}
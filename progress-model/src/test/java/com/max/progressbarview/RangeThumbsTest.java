@@ -0,0 +1,104 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link RangeThumbs}.
+ */
+public class RangeThumbsTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private RangeThumbs thumbs;
+
+    private ProgressBarGeometry geometry;
+
+    @Before
+    public void setUp() {
+        thumbs = new RangeThumbs();
+        // 10 pixels per value
+        geometry = new ProgressBarGeometry();
+        geometry.setLayout(1000, 100, 0, 0);
+        geometry.setMaxProgressValue(100);
+    }
+
+    @Test
+    public void setValues_sortsValues() {
+        thumbs.setValues(new float[]{70, 10, 40});
+
+        assertEquals(3, thumbs.size());
+        assertEquals(10, thumbs.getValue(0), DELTA);
+        assertEquals(40, thumbs.getValue(1), DELTA);
+        assertEquals(70, thumbs.getValue(2), DELTA);
+    }
+
+    @Test
+    public void setValue_clampsBetweenNeighbours() {
+        thumbs.setValues(new float[]{10, 40, 70});
+
+        assertEquals(70, thumbs.setValue(1, 90, 0, 100), DELTA);
+        assertEquals(10, thumbs.setValue(1, 5, 0, 100), DELTA);
+        assertEquals(0, thumbs.setValue(0, -5, 0, 100), DELTA);
+        assertEquals(100, thumbs.setValue(2, 120, 0, 100), DELTA);
+        assertEquals(0, thumbs.getValue(0), DELTA);
+        assertEquals(10, thumbs.getValue(1), DELTA);
+        assertEquals(100, thumbs.getValue(2), DELTA);
+    }
+
+    @Test
+    public void hitTest_findsNearestThumbWithinSlop() {
+        thumbs.setValues(new float[]{10, 40, 70});
+        thumbs.updatePositions(geometry);
+
+        assertEquals(0, thumbs.hitTest(95, 20));
+        assertEquals(1, thumbs.hitTest(415, 20));
+        assertEquals(1, thumbs.hitTest(389, 20));
+        assertEquals(2, thumbs.hitTest(720, 20));
+        assertEquals(-1, thumbs.hitTest(550, 20));
+        assertEquals(-1, thumbs.hitTest(0, 20));
+    }
+
+    @Test
+    public void hitTest_ofSharedPosition_picksBySide() {
+        thumbs.setValues(new float[]{50, 50, 50});
+        thumbs.updatePositions(geometry);
+
+        assertEquals(0, thumbs.hitTest(495, 20));
+        assertEquals(2, thumbs.hitTest(505, 20));
+    }
+
+    @Test
+    public void pickAmongEqual_picksByDirection() {
+        thumbs.setValues(new float[]{0, 0, 50});
+
+        assertEquals(1, thumbs.pickAmongEqual(0, true));
+        assertEquals(0, thumbs.pickAmongEqual(1, false));
+        assertEquals(2, thumbs.pickAmongEqual(2, true));
+    }
+
+    @Test
+    public void updatePosition_ignoresSubPixelMoves() {
+        thumbs.setValues(new float[]{10, 40});
+        thumbs.updatePositions(geometry);
+
+        thumbs.setValue(1, 40.02, 0, 100);
+        assertFalse(thumbs.updatePosition(1, geometry));
+
+        thumbs.setValue(1, 41, 0, 100);
+        assertTrue(thumbs.updatePosition(1, geometry));
+        assertEquals(410, thumbs.getPosition(1), DELTA);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getValue_outOfRange_throws() {
+        thumbs.setValues(new float[]{10, 40});
+
+        thumbs.getValue(2);
+    }
+
+}
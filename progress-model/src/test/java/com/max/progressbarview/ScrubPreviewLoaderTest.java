@@ -0,0 +1,230 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link ScrubPreviewLoader}, with executors that run queued tasks only
+ * when the test asks them to.
+ */
+public class ScrubPreviewLoaderTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private QueueExecutor backgroundExecutor;
+    private QueueExecutor callbackExecutor;
+
+    private final List<Float> loadedPositions = new ArrayList<Float>();
+    private final List<String> deliveredFrames = new ArrayList<String>();
+
+    private ScrubPreviewLoader<String> loader;
+
+    @Before
+    public void setUp() {
+        backgroundExecutor = new QueueExecutor();
+        callbackExecutor = new QueueExecutor();
+        loader = createLoader(100);
+    }
+
+    @Test
+    public void request_loadsAndDeliversFrameOfBucket() {
+        loader.request(12.5f, 0);
+        runAll();
+
+        assertEquals(1, loadedPositions.size());
+        assertEquals(10, loadedPositions.get(0), DELTA);
+        assertEquals(1, deliveredFrames.size());
+        assertEquals("frame@10.0", deliveredFrames.get(0));
+        assertEquals(10, loader.quantize(19.9f), DELTA);
+    }
+
+    @Test
+    public void request_deliversCachedFrameSynchronously() {
+        loader.request(10, 0);
+        runAll();
+        loader.request(30, 0);
+        runAll();
+        deliveredFrames.clear();
+        loadedPositions.clear();
+
+        loader.request(15, 0);
+
+        assertEquals(1, deliveredFrames.size());
+        assertEquals("frame@10.0", deliveredFrames.get(0));
+        assertTrue(loadedPositions.isEmpty());
+        assertTrue(backgroundExecutor.isEmpty());
+    }
+
+    @Test
+    public void request_dropsLoadsOutsideOfLatestRequest() {
+        loader.request(10, 0);
+        loader.request(20, 0);
+        loader.request(30, 0);
+        runAll();
+
+        assertEquals(1, loadedPositions.size());
+        assertEquals(30, loadedPositions.get(0), DELTA);
+        assertEquals(1, deliveredFrames.size());
+        assertEquals("frame@30.0", deliveredFrames.get(0));
+    }
+
+    @Test
+    public void request_prefetchesInDirectionOfVelocity() {
+        // 0.5s lookahead at 40 units/s covers two buckets of 10
+        loader.request(50, -40);
+        runAll();
+
+        assertEquals(3, loadedPositions.size());
+        assertEquals(50, loadedPositions.get(0), DELTA);
+        assertEquals(40, loadedPositions.get(1), DELTA);
+        assertEquals(30, loadedPositions.get(2), DELTA);
+        // Prefetched frames are cached but only the requested one is delivered
+        assertEquals(1, deliveredFrames.size());
+
+        deliveredFrames.clear();
+        loader.request(40, -40);
+        assertEquals("frame@40.0", deliveredFrames.get(0));
+    }
+
+    @Test
+    public void request_limitsPrefetchDistance() {
+        loader.setMaxPrefetch(2);
+        loader.request(0, 10000);
+        runAll();
+
+        assertEquals(3, loadedPositions.size());
+        assertEquals(20, loadedPositions.get(2), DELTA);
+    }
+
+    @Test
+    public void cache_evictsLeastRecentlyUsedFramesOverMaxSize() {
+        // Every frame is 10 long, so 2 fit
+        loader = createLoader(20);
+        loader.request(10, 0);
+        runAll();
+        loader.request(20, 0);
+        runAll();
+        loader.request(10, 0);
+        loader.request(30, 0);
+        runAll();
+        assertEquals(20, loader.getCacheSize());
+
+        loadedPositions.clear();
+        loader.request(10, 0);
+        loader.request(20, 0);
+        runAll();
+
+        assertEquals(1, loadedPositions.size());
+        assertEquals(20, loadedPositions.get(0), DELTA);
+    }
+
+    @Test
+    public void cancel_dropsQueuedLoads() {
+        loader.request(10, 40);
+        loader.cancel();
+        runAll();
+
+        assertTrue(loadedPositions.isEmpty());
+        assertTrue(deliveredFrames.isEmpty());
+    }
+
+    @Test
+    public void request_doesntAllocateOnceWarmedUp() {
+        final String frame = "frame";
+        final int[] delivered = new int[1];
+        // Room for 3 frames, so that scrubbing keeps evicting and loading frames
+        loader = new ScrubPreviewLoader<String>(
+                new ScrubPreviewLoader.FrameProvider<String>() {
+                    @Override
+                    public String loadFrame(float position) {
+                        return frame;
+                    }
+                },
+                new ScrubPreviewLoader.FrameSizer<String>() {
+                    @Override
+                    public int sizeOf(String frame) {
+                        return 10;
+                    }
+                },
+                30, 10, backgroundExecutor, callbackExecutor,
+                new ScrubPreviewLoader.Callback<String>() {
+                    @Override
+                    public void onFrameLoaded(float position, String frame) {
+                        delivered[0]++;
+                    }
+                });
+
+        long allocated = Allocations.measure(1000, 1000, new Allocations.Loop() {
+            @Override
+            public void run(int iteration) {
+                // Buckets past the range of Integer.valueOf's cache, so boxing would show
+                loader.request(5000 + iteration % 100 * 10, 40);
+                runAll();
+            }
+        });
+
+        assertEquals(0, allocated);
+        assertTrue(delivered[0] > 0);
+    }
+
+    private ScrubPreviewLoader<String> createLoader(int maxCacheSize) {
+        return new ScrubPreviewLoader<String>(
+                new ScrubPreviewLoader.FrameProvider<String>() {
+                    @Override
+                    public String loadFrame(float position) {
+                        loadedPositions.add(position);
+                        return "frame@" + position;
+                    }
+                },
+                new ScrubPreviewLoader.FrameSizer<String>() {
+                    @Override
+                    public int sizeOf(String frame) {
+                        return frame.length();
+                    }
+                },
+                maxCacheSize, 10, backgroundExecutor, callbackExecutor,
+                new ScrubPreviewLoader.Callback<String>() {
+                    @Override
+                    public void onFrameLoaded(float position, String frame) {
+                        deliveredFrames.add(frame);
+                    }
+                });
+    }
+
+    private void runAll() {
+        while (!backgroundExecutor.isEmpty() || !callbackExecutor.isEmpty()) {
+            backgroundExecutor.runAll();
+            callbackExecutor.runAll();
+        }
+    }
+
+    private static class QueueExecutor implements Executor {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        boolean isEmpty() {
+            return tasks.isEmpty();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+
+    }
+
+}
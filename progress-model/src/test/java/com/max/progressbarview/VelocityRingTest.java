@@ -0,0 +1,50 @@
+package com.max.progressbarview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link VelocityRing}.
+ */
+public class VelocityRingTest {
+
+    private static final float DELTA = 0.01f;
+
+    private VelocityRing velocityRing;
+
+    @Before
+    public void setUp() {
+        velocityRing = new VelocityRing();
+    }
+
+    @Test
+    public void computeVelocity_ofSteadyMotion() {
+        for (int i = 0; i < 40; i++) {
+            // 2 pixels every 4ms, wraps the ring more than once
+            velocityRing.add(i * 2, 1000 + i * 4);
+        }
+        assertEquals(500, velocityRing.computeVelocity(), DELTA);
+    }
+
+    @Test
+    public void computeVelocity_ignoresSamplesOutsideHorizon() {
+        velocityRing.add(0, 0);
+        velocityRing.add(1000, 10);
+        velocityRing.add(100, 500);
+        velocityRing.add(90, 510);
+        assertEquals(-1000, velocityRing.computeVelocity(), DELTA);
+    }
+
+    @Test
+    public void computeVelocity_needsTwoSamples() {
+        assertEquals(0, velocityRing.computeVelocity(), DELTA);
+        velocityRing.add(10, 10);
+        assertEquals(0, velocityRing.computeVelocity(), DELTA);
+        velocityRing.clear();
+        velocityRing.add(10, 10);
+        assertEquals(0, velocityRing.computeVelocity(), DELTA);
+    }
+
+}
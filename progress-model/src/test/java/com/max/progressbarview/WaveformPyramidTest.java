@@ -0,0 +1,146 @@
+package com.max.progressbarview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link WaveformPyramid}.
+ */
+public class WaveformPyramidTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void build_summarizesPairsOfPreviousLevel() {
+        WaveformPyramid pyramid = WaveformPyramid.build(
+                new float[]{0.1f, -0.5f, 0.7f, 0.2f, -0.9f}, 0, 5);
+
+        assertEquals(4, pyramid.getLevelCount());
+        assertEquals(5, pyramid.getLevelSize(0));
+        assertEquals(3, pyramid.getLevelSize(1));
+        assertEquals(2, pyramid.getLevelSize(2));
+        assertEquals(1, pyramid.getLevelSize(3));
+
+        assertEquals(-0.5f, pyramid.getMin(1, 0), DELTA);
+        assertEquals(0.1f, pyramid.getMax(1, 0), DELTA);
+        // Odd tail entry is its own pair
+        assertEquals(-0.9f, pyramid.getMin(1, 2), DELTA);
+        assertEquals(-0.9f, pyramid.getMax(1, 2), DELTA);
+        assertEquals(-0.9f, pyramid.getMin(3, 0), DELTA);
+        assertEquals(0.7f, pyramid.getMax(3, 0), DELTA);
+    }
+
+    @Test
+    public void append_matchesBuildingFromScratch() {
+        float[] samples = randomSamples(1000);
+        WaveformPyramid built = WaveformPyramid.build(samples, 0, samples.length);
+
+        WaveformPyramid appended = new WaveformPyramid();
+        int offset = 0;
+        int count = 1;
+        while (offset < samples.length) {
+            count = Math.min(count, samples.length - offset);
+            appended.append(samples, offset, count);
+            offset += count;
+            count = count * 3 % 17 + 1;
+        }
+
+        assertEquals(built.getLevelCount(), appended.getLevelCount());
+        for (int level = 0; level < built.getLevelCount(); level++) {
+            assertEquals(built.getLevelSize(level), appended.getLevelSize(level));
+            for (int i = 0; i < built.getLevelSize(level); i++) {
+                assertEquals(built.getMin(level, i), appended.getMin(level, i), DELTA);
+                assertEquals(built.getMax(level, i), appended.getMax(level, i), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void resample_returnsMinAndMaxOfEveryColumn() {
+        float[] samples = randomSamples(4096);
+        WaveformPyramid pyramid = WaveformPyramid.build(samples, 0, samples.length);
+        int columns = 64;
+        float[] mins = new float[columns];
+        float[] maxs = new float[columns];
+
+        assertEquals(columns, pyramid.resample(columns, mins, maxs));
+
+        int perColumn = samples.length / columns;
+        for (int column = 0; column < columns; column++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (int i = column * perColumn; i < (column + 1) * perColumn; i++) {
+                min = Math.min(min, samples[i]);
+                max = Math.max(max, samples[i]);
+            }
+            assertEquals(min, mins[column], DELTA);
+            assertEquals(max, maxs[column], DELTA);
+        }
+    }
+
+    @Test
+    public void resample_coversAllSamplesWhenColumnsDontDivideThem() {
+        float[] samples = new float[1001];
+        samples[1000] = 1;
+        WaveformPyramid pyramid = WaveformPyramid.build(samples, 0, samples.length);
+        float[] mins = new float[300];
+        float[] maxs = new float[300];
+
+        pyramid.resample(300, mins, maxs);
+
+        assertEquals(1, maxs[299], DELTA);
+        float overallMax = 0;
+        for (int column = 0; column < 299; column++) {
+            overallMax = Math.max(overallMax, maxs[column]);
+        }
+        assertEquals(0, overallMax, DELTA);
+    }
+
+    @Test
+    public void resample_stretchesFewerSamplesThanColumns() {
+        WaveformPyramid pyramid = WaveformPyramid.build(new float[]{-1, 1}, 0, 2);
+        float[] mins = new float[4];
+        float[] maxs = new float[4];
+
+        assertEquals(4, pyramid.resample(4, mins, maxs));
+
+        assertEquals(-1, maxs[1], DELTA);
+        assertEquals(1, mins[2], DELTA);
+    }
+
+    @Test
+    public void resample_withoutSamples_returnsZero() {
+        assertEquals(0, new WaveformPyramid().resample(10, new float[10], new float[10]));
+    }
+
+    @Test
+    public void resample_doesntAllocate() {
+        float[] samples = randomSamples(200000);
+        final WaveformPyramid pyramid = WaveformPyramid.build(samples, 0, samples.length);
+        final float[] mins = new float[1080];
+        final float[] maxs = new float[1080];
+
+        long allocated = Allocations.measure(1, 1000, new Allocations.Loop() {
+            @Override
+            public void run(int iteration) {
+                pyramid.resample(1080, mins, maxs);
+            }
+        });
+
+        assertTrue("resample allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static float[] randomSamples(int count) {
+        Random random = new Random(42);
+        float[] samples = new float[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = random.nextFloat() * 2 - 1;
+        }
+        return samples;
+    }
+
+}
@@ -54,10 +54,12 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        progressBarView.setMinProgressValue(0f);
-        progressBarView.setMaxProgressValue(100f);
-        progressBarView.setPrimaryProgressValue(30);
-        progressBarView.setSecondaryProgressValue(60);
+        progressBarView.edit()
+                .setMinProgressValue(0f)
+                .setMaxProgressValue(100f)
+                .setPrimaryProgressValue(30)
+                .setSecondaryProgressValue(60)
+                .apply();
     }
 
 